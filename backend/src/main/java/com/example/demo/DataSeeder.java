@@ -1,26 +1,18 @@
 package com.example.demo;
 
 import com.example.demo.model.Course;
-import com.example.demo.model.User;
-import com.example.demo.model.UserLevel;
 import com.example.demo.repository.CourseRepository;
 import com.example.demo.repository.UserLevelRepository;
-import com.example.demo.repository.UserRepository;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.CommandLineRunner;
 import org.springframework.stereotype.Component;
 
-import java.util.List;
-
 @Component
 public class DataSeeder implements CommandLineRunner {
 
     @Autowired
     private CourseRepository courseRepository;
 
-    @Autowired
-    private UserRepository userRepository;
-
     @Autowired
     private UserLevelRepository userLevelRepository;
 
@@ -95,18 +87,10 @@ public class DataSeeder implements CommandLineRunner {
             System.out.println("--- 課程資料初始化完成 (Added EXP) ---");
         }
 
-        // 2. 確保所有現有使用者都有 UserLevel
-        List<User> users = userRepository.findAll();
-        for (User user : users) {
-            if (userLevelRepository.findByUser(user).isEmpty()) {
-                UserLevel level = new UserLevel();
-                level.setUser(user);
-                level.setLevel(1);
-                level.setCurrentExp(0);
-                level.setNextLevelThreshold(100);
-                userLevelRepository.save(level);
-                System.out.println("Created UserLevel for user: " + user.getEmail());
-            }
+        // 2. 確保所有現有使用者都有 UserLevel (集合式補齊，啟動時間不隨使用者數量成長)
+        int created = userLevelRepository.createMissingLevels();
+        if (created > 0) {
+            System.out.println("Created UserLevel for " + created + " users");
         }
     }
 }
\ No newline at end of file
@@ -0,0 +1,60 @@
+package com.example.demo.config;
+
+import com.example.demo.service.AdmissionControlService;
+import com.example.demo.service.PriorityClass;
+import jakarta.servlet.DispatcherType;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.HandlerInterceptor;
+
+// 在進入 Controller 前做流量控制，被拒絕的請求直接回 429 / 503 並附上 Retry-After
+@Component
+public class AdmissionInterceptor implements HandlerInterceptor {
+
+    private static final String ATTR_CLASS = AdmissionInterceptor.class.getName() + ".class";
+
+    @Autowired
+    private AdmissionControlService admissionControlService;
+
+    @Override
+    public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler)
+            throws Exception {
+        // CORS 預檢請求不計入；非同步回應 (串流匯出) 的第二次 dispatch 沿用第一次的名額
+        if ("OPTIONS".equals(request.getMethod()) || request.getDispatcherType() == DispatcherType.ASYNC) {
+            return true;
+        }
+
+        PriorityClass pc = admissionControlService.classify(request.getMethod(), request.getRequestURI());
+        // 驗證過的 token 以使用者區分，其他以來源 IP 區分 (經過反向代理時由 server.forward-headers-strategy 取得原始 IP)
+        String authHeader = request.getHeader("Authorization");
+        String clientKey = admissionControlService.clientKey(pc, authHeader, request.getRemoteAddr());
+
+        AdmissionControlService.Decision decision = admissionControlService.tryAdmit(pc, clientKey);
+        if (!decision.admitted()) {
+            response.setStatus(decision.status());
+            response.setHeader("Retry-After", String.valueOf(decision.retryAfterSeconds()));
+            // 直接回應不會經過 @CrossOrigin，需自行補上 CORS 標頭讓前端讀得到錯誤
+            response.setHeader("Access-Control-Allow-Origin", "*");
+            response.setHeader("Access-Control-Expose-Headers", "Retry-After");
+            response.setContentType("text/plain;charset=UTF-8");
+            response.getWriter().write(decision.status() == 429 ? "請求過於頻繁，請稍後再試" : "系統忙碌中，請稍後再試");
+            return false;
+        }
+
+        request.setAttribute(ATTR_CLASS, pc);
+        admissionControlService.rememberToken(pc, authHeader);
+        return true;
+    }
+
+    @Override
+    public void afterCompletion(HttpServletRequest request, HttpServletResponse response, Object handler,
+            Exception ex) {
+        Object pc = request.getAttribute(ATTR_CLASS);
+        if (pc != null) {
+            request.removeAttribute(ATTR_CLASS);
+            admissionControlService.release((PriorityClass) pc);
+        }
+    }
+}
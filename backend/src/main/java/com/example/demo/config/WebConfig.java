@@ -1,11 +1,15 @@
 package com.example.demo.config;
 
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.http.CacheControl;
+import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
 import org.springframework.web.servlet.config.annotation.ResourceHandlerRegistry;
 import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
 
 import java.io.File;
+import java.util.concurrent.TimeUnit;
 
 @Configuration
 public class WebConfig implements WebMvcConfigurer {
@@ -13,15 +17,25 @@ public class WebConfig implements WebMvcConfigurer {
     @Value("${app.video.upload-dir:/shared/videos}")
     private String uploadDir;
 
+    @Autowired
+    private AdmissionInterceptor admissionInterceptor;
+
+    @Override
+    public void addInterceptors(InterceptorRegistry registry) {
+        // 只管 API，影片等靜態資源不受影響
+        registry.addInterceptor(admissionInterceptor).addPathPatterns("/api/**");
+    }
+
     @Override
     public void addResourceHandlers(ResourceHandlerRegistry registry) {
         // 確保路徑以 / 結尾
         String path = uploadDir.endsWith(File.separator) ? uploadDir : uploadDir + File.separator;
 
-        // 設定資源對映
-        // 請求網址: http://backend-url/videos/demo.mp4
-        // 實際檔案: /shared/videos/demo.mp4
-        registry.addResourceHandler("/videos/**")
-                .addResourceLocations("file:" + path);
+        // 以內容雜湊命名的影片永遠不會變動，可以讓瀏覽器 / CDN 快取一年
+        // 只開放 blobs/，上傳用的暫存檔 (.tmp/) 不會被存取到；
+        // /videos/demo.mp4 這類名稱由 VideoController 轉址到對應的 blob
+        registry.addResourceHandler("/videos/blobs/**")
+                .addResourceLocations("file:" + path + "blobs" + File.separator)
+                .setCacheControl(CacheControl.maxAge(365, TimeUnit.DAYS).cachePublic().immutable());
     }
 }
\ No newline at end of file
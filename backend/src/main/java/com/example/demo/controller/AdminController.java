@@ -0,0 +1,128 @@
+package com.example.demo.controller;
+
+import com.example.demo.model.User;
+import com.example.demo.repository.UserRepository;
+import com.example.demo.service.AdmissionControlService;
+import com.example.demo.service.BulkEnrollmentService;
+import com.example.demo.service.ExportService;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.io.IOException;
+import java.sql.SQLException;
+import java.util.zip.GZIPOutputStream;
+
+@RestController
+@RequestMapping("/api/admin")
+@CrossOrigin(origins = "*")
+public class AdminController {
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private AdmissionControlService admissionControlService;
+
+    @Autowired
+    private BulkEnrollmentService bulkEnrollmentService;
+
+    @Autowired
+    private ExportService exportService;
+
+    private User getUserByToken(String authHeader) {
+        if (authHeader == null || !authHeader.startsWith("Bearer "))
+            return null;
+        String token = authHeader.replace("Bearer ", "");
+        return userRepository.findByToken(token).orElse(null);
+    }
+
+    // 流量控制統計 (各等級的併發數、被拒絕次數)
+    @GetMapping("/admission")
+    public ResponseEntity<?> getAdmissionStats(@RequestHeader("Authorization") String token) {
+        User user = getUserByToken(token);
+        if (user == null)
+            return ResponseEntity.status(HttpStatus.UNAUTHORIZED).body("請先登入");
+        if (!"ADMIN".equals(user.getRole()))
+            return ResponseEntity.status(HttpStatus.FORBIDDEN).body("無權限操作");
+
+        return ResponseEntity.ok(admissionControlService.snapshot());
+    }
+
+    // 大量開課：request body 直接是 CSV (email,name,courseId[,password])，回傳每一行的處理結果 (CSV)
+    // 例：curl -H "Authorization: Bearer <token>" -H "Content-Type: text/csv" --data-binary @employees.csv
+    @PostMapping(value = "/enrollments/import", consumes = { "text/csv", "text/plain" })
+    public ResponseEntity<?> importEnrollments(@RequestHeader("Authorization") String token,
+                                               HttpServletRequest request,
+                                               HttpServletResponse response) {
+        User user = getUserByToken(token);
+        if (user == null)
+            return ResponseEntity.status(HttpStatus.UNAUTHORIZED).body("請先登入");
+        if (!"ADMIN".equals(user.getRole()))
+            return ResponseEntity.status(HttpStatus.FORBIDDEN).body("無權限操作");
+
+        try {
+            response.setContentType("text/csv;charset=UTF-8");
+            response.setHeader("Content-Disposition", "attachment; filename=\"enrollment-report.csv\"");
+            bulkEnrollmentService.importCsv(request.getInputStream(), response.getOutputStream());
+            return null; // 結果已直接寫入 response
+        } catch (IOException | SQLException | RuntimeException e) {
+            e.printStackTrace();
+            if (response.isCommitted())
+                return null; // 報表已開始輸出，只能中斷
+            response.reset();
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body("匯入失敗: " + e.getMessage());
+        }
+    }
+
+    // 資料匯出：dataset = unit-progress | orders，format = csv | ndjson，gzip=true 時輸出 .gz
+    @GetMapping("/exports/{dataset}")
+    public ResponseEntity<?> export(@RequestHeader("Authorization") String token,
+                                    @PathVariable String dataset,
+                                    @RequestParam(defaultValue = "csv") String format,
+                                    @RequestParam(defaultValue = "false") boolean gzip) {
+        User user = getUserByToken(token);
+        if (user == null)
+            return ResponseEntity.status(HttpStatus.UNAUTHORIZED).body("請先登入");
+        if (!"ADMIN".equals(user.getRole()))
+            return ResponseEntity.status(HttpStatus.FORBIDDEN).body("無權限操作");
+
+        ExportService.Dataset target;
+        if ("unit-progress".equals(dataset)) {
+            target = ExportService.Dataset.UNIT_PROGRESS;
+        } else if ("orders".equals(dataset)) {
+            target = ExportService.Dataset.ORDERS;
+        } else {
+            return ResponseEntity.notFound().build();
+        }
+        if (!"csv".equals(format) && !"ndjson".equals(format)) {
+            return ResponseEntity.badRequest().body("不支援的格式");
+        }
+
+        boolean ndjson = "ndjson".equals(format);
+        String fileName = dataset + "." + format + (gzip ? ".gz" : "");
+        MediaType contentType = gzip ? MediaType.parseMediaType("application/gzip")
+                : ndjson ? MediaType.parseMediaType("application/x-ndjson") : MediaType.parseMediaType("text/csv");
+
+        StreamingResponseBody body = out -> {
+            if (gzip) {
+                GZIPOutputStream gzipOut = new GZIPOutputStream(out, 1 << 16);
+                exportService.export(target, ndjson, gzipOut);
+                gzipOut.finish();
+            } else {
+                exportService.export(target, ndjson, out);
+            }
+        };
+
+        return ResponseEntity.ok()
+                .contentType(contentType)
+                .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"" + fileName + "\"")
+                .body(body);
+    }
+}
@@ -1,16 +1,24 @@
 package com.example.demo.controller;
 
+import com.example.demo.dto.OrderHistoryItem;
+import com.example.demo.dto.OrderHistoryPage;
 import com.example.demo.model.Course;
 import com.example.demo.model.Order;
 import com.example.demo.model.User;
 import com.example.demo.repository.CourseRepository;
 import com.example.demo.repository.OrderRepository;
 import com.example.demo.repository.UserRepository;
+import com.example.demo.service.FunnelStatsService;
+import com.example.demo.service.OrderExpiryService;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.Limit;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.Base64;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
@@ -29,6 +37,12 @@ public class OrderController {
     @Autowired
     private CourseRepository courseRepository;
 
+    @Autowired
+    private OrderExpiryService orderExpiryService;
+
+    @Autowired
+    private FunnelStatsService funnelStatsService;
+
     private User getUserByToken(String authHeader) {
         if (authHeader == null || !authHeader.startsWith("Bearer ")) return null;
         String token = authHeader.replace("Bearer ", "");
@@ -56,8 +70,12 @@ public class OrderController {
         // 2. 檢查是否有「待付款 (PENDING)」的訂單
         Optional<Order> pendingOrder = orderRepository.findByUserAndCourseAndStatus(user, course, "PENDING");
         if (pendingOrder.isPresent()) {
-            // 如果有，直接回傳該訂單 (斷點續購)
-            return ResponseEntity.ok(pendingOrder.get());
+            if (!orderExpiryService.isExpired(pendingOrder.get())) {
+                // 如果有，直接回傳該訂單 (斷點續購)
+                return ResponseEntity.ok(pendingOrder.get());
+            }
+            // 已逾期但尚未被清理：先取消再建立新訂單
+            orderRepository.updateStatusIfCurrent(pendingOrder.get().getId(), "PENDING", "CANCELLED");
         }
 
         // 3. 建立新的待付款訂單
@@ -67,6 +85,7 @@ public class OrderController {
         order.setStatus("PENDING"); // 初始狀態
         
         orderRepository.save(order);
+        orderExpiryService.track(order);
         return ResponseEntity.ok(order);
     }
 
@@ -89,25 +108,75 @@ public class OrderController {
             return ResponseEntity.status(HttpStatus.FORBIDDEN).body("無權限操作此訂單");
         }
 
-        // 寫入付款資訊
+        // 重複送出付款：直接回傳
+        if ("PAID".equals(order.getStatus())) {
+            return ResponseEntity.ok(order);
+        }
+
+        if (!"PENDING".equals(order.getStatus()) || orderExpiryService.isExpired(order)) {
+            return ResponseEntity.status(HttpStatus.CONFLICT).body("訂單已逾期或已取消，請重新下單");
+        }
+
+        // 寫入付款資訊並變更狀態為已付款 (條件式更新，與逾期清理互斥)
+        int updated = orderRepository.markPaid(id, body.get("paymentMethod"), body.get("invoiceType"),
+                body.get("invoiceCarrier"));
+        if (updated == 0) {
+            return ResponseEntity.status(HttpStatus.CONFLICT).body("訂單已逾期或已取消，請重新下單");
+        }
+        funnelStatsService.enrolled(order.getCourse().getId(), 1);
+
         order.setPaymentMethod(body.get("paymentMethod"));
         order.setInvoiceType(body.get("invoiceType"));
         order.setInvoiceCarrier(body.get("invoiceCarrier"));
-        
-        // 變更狀態為已付款
         order.setStatus("PAID");
-        
-        orderRepository.save(order);
         return ResponseEntity.ok(order);
     }
 
+    // 我的有效訂單：只回傳訂單 id、課程 id 與狀態 (完整紀錄請用 /my/history 分頁)
     @GetMapping("/my")
     public ResponseEntity<?> getMyOrders(@RequestHeader("Authorization") String token) {
         User user = getUserByToken(token);
         if (user == null) return ResponseEntity.status(HttpStatus.UNAUTHORIZED).body("請先登入");
 
-        List<Order> orders = orderRepository.findByUserOrderByCreatedAtDesc(user);
-        return ResponseEntity.ok(orders);
+        return ResponseEntity.ok(orderRepository.findActiveStatuses(user.getId()));
+    }
+
+    // 訂單紀錄 (分頁)：cursor 為上一頁回傳的 nextCursor，第一頁不用帶
+    @GetMapping("/my/history")
+    public ResponseEntity<?> getMyOrderHistory(@RequestHeader("Authorization") String token,
+                                               @RequestParam(required = false) String cursor,
+                                               @RequestParam(defaultValue = "20") int limit) {
+        User user = getUserByToken(token);
+        if (user == null) return ResponseEntity.status(HttpStatus.UNAUTHORIZED).body("請先登入");
+
+        limit = Math.max(1, Math.min(limit, 100));
+        // 多拿一筆用來判斷是否還有下一頁
+        Limit fetch = Limit.of(limit + 1);
+
+        List<OrderHistoryItem> items;
+        if (cursor == null || cursor.isBlank()) {
+            items = orderRepository.findHistory(user.getId(), fetch);
+        } else {
+            LocalDateTime createdAt;
+            Long lastId;
+            try {
+                String[] parts = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8).split("\\|");
+                createdAt = LocalDateTime.parse(parts[0]);
+                lastId = Long.valueOf(parts[1]);
+            } catch (RuntimeException e) {
+                return ResponseEntity.badRequest().body("cursor 格式錯誤");
+            }
+            items = orderRepository.findHistoryBefore(user.getId(), createdAt, lastId, fetch);
+        }
+
+        String nextCursor = null;
+        if (items.size() > limit) {
+            items = items.subList(0, limit);
+            OrderHistoryItem last = items.get(limit - 1);
+            nextCursor = Base64.getUrlEncoder().withoutPadding().encodeToString(
+                    (last.getCreatedAt() + "|" + last.getId()).getBytes(StandardCharsets.UTF_8));
+        }
+        return ResponseEntity.ok(new OrderHistoryPage(items, nextCursor));
     }
 
     @PostMapping("/{id}/cancel")
@@ -123,8 +192,12 @@ public class OrderController {
             return ResponseEntity.status(HttpStatus.FORBIDDEN).body("無權限操作");
         }
 
+        boolean wasPaid = "PAID".equals(order.getStatus());
         order.setStatus("CANCELLED");
         orderRepository.save(order);
+        if (wasPaid) {
+            funnelStatsService.enrolled(order.getCourse().getId(), -1);
+        }
         return ResponseEntity.ok(order);
     }
 }
\ No newline at end of file
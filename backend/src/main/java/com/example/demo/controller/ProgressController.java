@@ -7,11 +7,11 @@ import com.example.demo.model.UserLevel;
 import com.example.demo.repository.CourseRepository;
 import com.example.demo.repository.OrderRepository;
 import com.example.demo.repository.UnitProgressRepository;
-import com.example.demo.repository.UserLevelRepository;
 import com.example.demo.repository.UserRepository;
-import com.fasterxml.jackson.core.JsonProcessingException;
-import com.fasterxml.jackson.databind.JsonNode;
-import com.fasterxml.jackson.databind.ObjectMapper;
+import com.example.demo.service.DashboardService;
+import com.example.demo.service.FunnelStatsService;
+import com.example.demo.service.UnitDeliveryService;
+import com.example.demo.service.WatchEventJournal;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
@@ -36,10 +36,19 @@ public class ProgressController {
     private CourseRepository courseRepository;
 
     @Autowired
-    private UserLevelRepository userLevelRepository;
+    private OrderRepository orderRepository;
 
     @Autowired
-    private OrderRepository orderRepository;
+    private WatchEventJournal watchEventJournal;
+
+    @Autowired
+    private UnitDeliveryService unitDeliveryService;
+
+    @Autowired
+    private FunnelStatsService funnelStatsService;
+
+    @Autowired
+    private DashboardService dashboardService;
 
     private User getUserByToken(String authHeader) {
         if (authHeader == null || !authHeader.startsWith("Bearer "))
@@ -48,6 +57,16 @@ public class ProgressController {
         return userRepository.findByToken(token).orElse(null);
     }
 
+    // 我的課程：每門已購買課程的完成單元數、完成百分比與上次觀看位置 (依最近觀看排序)
+    @GetMapping("/dashboard")
+    public ResponseEntity<?> getDashboard(@RequestHeader("Authorization") String token) {
+        User user = getUserByToken(token);
+        if (user == null)
+            return ResponseEntity.status(HttpStatus.UNAUTHORIZED).body("請先登入");
+
+        return ResponseEntity.ok(dashboardService.dashboard(user.getId()));
+    }
+
     @GetMapping("/courses/{courseId}")
     public ResponseEntity<?> getCourseProgress(
             @RequestHeader("Authorization") String token,
@@ -89,7 +108,11 @@ public class ProgressController {
                 .findByUserAndCourseAndUnitId(user, course, unitId)
                 .orElse(new UnitProgress());
 
-        if (unitProgress.getId() == null) {
+        boolean started = unitProgress.getId() == null;
+        int previousPercent = unitProgress.getProgressPercent();
+        boolean wasCompleted = unitProgress.getCompleted();
+
+        if (started) {
             unitProgress.setUser(user);
             unitProgress.setCourse(course);
             unitProgress.setUnitId(unitId);
@@ -107,6 +130,11 @@ public class ProgressController {
         }
 
         progressRepository.save(unitProgress);
+        funnelStatsService.progressUpdated(course, unitId, started,
+                unitProgress.getProgressPercent() - previousPercent, !wasCompleted && unitProgress.getCompleted());
+
+        // 每次心跳都記到觀看事件日誌 (不進資料庫)，供影片 heatmap 使用
+        watchEventJournal.append(user.getId(), courseId, unitId, position, System.currentTimeMillis());
         return ResponseEntity.ok(unitProgress);
     }
 
@@ -131,72 +159,20 @@ public class ProgressController {
             return ResponseEntity.status(HttpStatus.FORBIDDEN).body("體驗模式無法交付單元，請先購買課程");
         }
 
-        // 2. 檢查進度
-        UnitProgress progress = progressRepository.findByUserAndCourseAndUnitId(user, course, unitId)
-                .orElse(null);
-
-        if (progress == null || !progress.getCompleted()) {
+        // 2. 標記已交付、更新等級 (同一個交易，附帶處理交給 outbox)
+        UnitDeliveryService.Result delivery = unitDeliveryService.deliver(user, course, unitId);
+        if (delivery.outcome() == UnitDeliveryService.Outcome.NOT_COMPLETED) {
             return ResponseEntity.badRequest().body("單元尚未完成，無法交付");
         }
-
-        if (progress.getDelivered()) {
+        if (delivery.outcome() == UnitDeliveryService.Outcome.ALREADY_DELIVERED) {
             return ResponseEntity.badRequest().body("此單元已交付過");
         }
+        UserLevel userLevel = delivery.level();
 
-        // 3. 解析單元經驗值
-        int expToGain = 100; // 預設
-        try {
-            ObjectMapper mapper = new ObjectMapper();
-            JsonNode root = mapper.readTree(course.getSyllabusJson());
-            // 遍歷章節尋找單元
-            for (JsonNode chapter : root) {
-                if (chapter.has("units")) {
-                    for (JsonNode unit : chapter.get("units")) {
-                        if (unit.has("id") && unit.get("id").asText().equals(unitId)) {
-                            if (unit.has("exp")) {
-                                expToGain = unit.get("exp").asInt();
-                            }
-                            break;
-                        }
-                    }
-                }
-            }
-        } catch (JsonProcessingException e) {
-            e.printStackTrace(); // Log error but continue with default EXP
-        }
-
-        // 4. 更新使用者經驗值與等級
-        UserLevel userLevel = userLevelRepository.findByUser(user).orElseGet(() -> {
-            UserLevel ul = new UserLevel();
-            ul.setUser(user);
-            ul.setLevel(1);
-            ul.setCurrentExp(0);
-            ul.setNextLevelThreshold(100);
-            return userLevelRepository.save(ul);
-        });
-
-        userLevel.setCurrentExp(userLevel.getCurrentExp() + expToGain);
-
-        boolean leveledUp = false;
-        // 升級邏輯：當前經驗 >= 門檻時升級
-        while (userLevel.getCurrentExp() >= userLevel.getNextLevelThreshold()) {
-            userLevel.setCurrentExp(userLevel.getCurrentExp() - userLevel.getNextLevelThreshold());
-            userLevel.setLevel(userLevel.getLevel() + 1);
-            // 門檻變為原來的 1.5 倍 (取整數)
-            userLevel.setNextLevelThreshold((int) (userLevel.getNextLevelThreshold() * 1.5));
-            leveledUp = true;
-        }
-
-        userLevelRepository.save(userLevel);
-
-        // 5. 標記為已交付
-        progress.setDelivered(true);
-        progressRepository.save(progress);
-
-        // 6. 回傳結果
+        // 3. 回傳結果
         Map<String, Object> result = new HashMap<>();
-        result.put("expGained", expToGain);
-        result.put("leveledUp", leveledUp);
+        result.put("expGained", delivery.expGained());
+        result.put("leveledUp", delivery.leveledUp());
         result.put("newLevel", userLevel.getLevel());
         result.put("currentExp", userLevel.getCurrentExp());
         result.put("nextLevelThreshold", userLevel.getNextLevelThreshold());
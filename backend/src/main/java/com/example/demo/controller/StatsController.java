@@ -0,0 +1,101 @@
+package com.example.demo.controller;
+
+import com.example.demo.model.Course;
+import com.example.demo.model.User;
+import com.example.demo.repository.CourseRepository;
+import com.example.demo.repository.UserRepository;
+import com.example.demo.service.EngagementHeatmapService;
+import com.example.demo.service.FunnelStatsService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.HashMap;
+import java.util.Map;
+
+// 課程觀看統計 (給講師 / 管理者看)
+@RestController
+@RequestMapping("/api/stats")
+@CrossOrigin(origins = "*")
+public class StatsController {
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private CourseRepository courseRepository;
+
+    @Autowired
+    private EngagementHeatmapService engagementHeatmapService;
+
+    @Autowired
+    private FunnelStatsService funnelStatsService;
+
+    private User getUserByToken(String authHeader) {
+        if (authHeader == null || !authHeader.startsWith("Bearer "))
+            return null;
+        String token = authHeader.replace("Bearer ", "");
+        return userRepository.findByToken(token).orElse(null);
+    }
+
+    // 影片每一秒的觀看次數：views[i] = 第 i 秒被看過幾次 (重看會重複計算)
+    @GetMapping("/courses/{courseId}/units/{unitId}/heatmap")
+    public ResponseEntity<?> getHeatmap(
+            @RequestHeader("Authorization") String token,
+            @PathVariable Long courseId,
+            @PathVariable String unitId) {
+
+        User user = getUserByToken(token);
+        if (user == null)
+            return ResponseEntity.status(HttpStatus.UNAUTHORIZED).body("請先登入");
+        if (!"ADMIN".equals(user.getRole()))
+            return ResponseEntity.status(HttpStatus.FORBIDDEN).body("無權限操作");
+
+        Map<String, Object> result = new HashMap<>();
+        result.put("courseId", courseId);
+        result.put("unitId", unitId);
+        result.put("bucketSeconds", 1);
+        result.put("views", engagementHeatmapService.heatmap(courseId, unitId));
+        return ResponseEntity.ok(result);
+    }
+
+    // 完課漏斗：購買人數，以及每個單元開始 / 完成 / 交付的人數與平均進度
+    @GetMapping("/courses/{courseId}/funnel")
+    public ResponseEntity<?> getFunnel(
+            @RequestHeader("Authorization") String token,
+            @PathVariable Long courseId) {
+
+        User user = getUserByToken(token);
+        if (user == null)
+            return ResponseEntity.status(HttpStatus.UNAUTHORIZED).body("請先登入");
+        if (!"ADMIN".equals(user.getRole()))
+            return ResponseEntity.status(HttpStatus.FORBIDDEN).body("無權限操作");
+
+        Course course = courseRepository.findById(courseId).orElse(null);
+        if (course == null)
+            return ResponseEntity.notFound().build();
+
+        return ResponseEntity.ok(funnelStatsService.funnel(course));
+    }
+
+    // 從 orders / unit_progress 重新計算漏斗統計 (校正累加誤差)
+    @PostMapping("/courses/{courseId}/funnel/rebuild")
+    public ResponseEntity<?> rebuildFunnel(
+            @RequestHeader("Authorization") String token,
+            @PathVariable Long courseId) {
+
+        User user = getUserByToken(token);
+        if (user == null)
+            return ResponseEntity.status(HttpStatus.UNAUTHORIZED).body("請先登入");
+        if (!"ADMIN".equals(user.getRole()))
+            return ResponseEntity.status(HttpStatus.FORBIDDEN).body("無權限操作");
+
+        Course course = courseRepository.findById(courseId).orElse(null);
+        if (course == null)
+            return ResponseEntity.notFound().build();
+
+        funnelStatsService.rebuild(courseId);
+        return ResponseEntity.ok(funnelStatsService.funnel(course));
+    }
+}
@@ -1,17 +1,13 @@
 package com.example.demo.controller;
 
-import org.springframework.beans.factory.annotation.Value;
+import com.example.demo.service.VideoStore;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.multipart.MultipartFile;
 
-import java.io.File;
 import java.io.IOException;
-import java.nio.file.Files;
-import java.nio.file.Path;
-import java.nio.file.Paths;
-import java.nio.file.StandardCopyOption;
 import java.util.HashMap;
 import java.util.Map;
 
@@ -20,15 +16,15 @@ import java.util.Map;
 @CrossOrigin(origins = "*")
 public class TestUploadController {
 
-    @Value("${app.video.upload-dir:/shared/videos}")
-    private String uploadDir;
+    @Autowired
+    private VideoStore videoStore;
 
     @PostMapping("/video")
     public ResponseEntity<?> uploadVideo(@RequestParam("file") MultipartFile file,
             @RequestParam("fileName") String fileName) {
 
-        // ... (前面的檢查邏輯保持不變) ...
-        if (fileName.contains("..") || fileName.contains("/") || fileName.contains("\\")) {
+        String saveName = toSaveName(fileName);
+        if (saveName == null) {
             return ResponseEntity.badRequest().body("不合法的檔名");
         }
         if (file.isEmpty()) {
@@ -36,27 +32,36 @@ public class TestUploadController {
         }
 
         try {
-            Path directoryPath = Paths.get(uploadDir);
-            if (!Files.exists(directoryPath)) {
-                Files.createDirectories(directoryPath);
-            }
-
-            String saveName = fileName;
-            if (!saveName.toLowerCase().endsWith(".mp4")) {
-                saveName += ".mp4";
-            }
+            VideoStore.Stored stored = videoStore.store(file.getInputStream(), saveName);
+            return ResponseEntity.ok(toResponse(stored));
 
-            Path filePath = directoryPath.resolve(saveName);
-            Files.copy(file.getInputStream(), filePath, StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException e) {
+            e.printStackTrace();
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                    .body("上傳失敗: " + e.getMessage());
+        }
+    }
 
-            Map<String, String> response = new HashMap<>();
-            response.put("message", "上傳成功");
+    // 前端先算出檔案的 SHA-256，伺服器上已有相同內容就直接建立對應，不用再上傳一次
+    @PostMapping("/video/by-digest")
+    public ResponseEntity<?> linkVideo(@RequestParam("sha256") String sha256,
+            @RequestParam("fileName") String fileName) {
 
-            // [修改重點] 這裡不需要回傳完整路徑，只要回傳檔名即可，前端會自己組裝 URL
-            // 或者回傳後端的資源路徑
-            response.put("path", "/videos/" + saveName);
+        String saveName = toSaveName(fileName);
+        if (saveName == null) {
+            return ResponseEntity.badRequest().body("不合法的檔名");
+        }
+        sha256 = sha256.toLowerCase();
+        if (!sha256.matches("[0-9a-f]{64}")) {
+            return ResponseEntity.badRequest().body("不合法的 SHA-256");
+        }
 
-            return ResponseEntity.ok(response);
+        try {
+            VideoStore.Stored stored = videoStore.linkExisting(sha256, saveName);
+            if (stored == null) {
+                return ResponseEntity.status(HttpStatus.NOT_FOUND).body("找不到相同內容的影片，請上傳檔案");
+            }
+            return ResponseEntity.ok(toResponse(stored));
 
         } catch (IOException e) {
             e.printStackTrace();
@@ -64,4 +69,25 @@ public class TestUploadController {
                     .body("上傳失敗: " + e.getMessage());
         }
     }
-}
\ No newline at end of file
+
+    private static String toSaveName(String fileName) {
+        if (fileName.isBlank() || fileName.startsWith(".") || fileName.contains("..")
+                || fileName.contains("/") || fileName.contains("\\")) {
+            return null;
+        }
+        return fileName.toLowerCase().endsWith(".mp4") ? fileName : fileName + ".mp4";
+    }
+
+    private static Map<String, Object> toResponse(VideoStore.Stored stored) {
+        Map<String, Object> response = new HashMap<>();
+        response.put("message", stored.deduplicated() ? "已有相同內容的影片，略過上傳" : "上傳成功");
+
+        // 回傳後端的資源路徑，前端會自己組裝 URL
+        response.put("path", "/videos/" + stored.fileName());
+        // 內容不會變動的路徑 (可長期快取，播放中也不會被覆蓋)
+        response.put("immutablePath", "/videos/" + VideoStore.blobPath(stored.sha256()));
+        response.put("sha256", stored.sha256());
+        response.put("deduplicated", stored.deduplicated());
+        return response;
+    }
+}
@@ -0,0 +1,44 @@
+package com.example.demo.controller;
+
+import com.example.demo.service.VideoStore;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.io.IOException;
+import java.net.URI;
+
+@RestController
+@RequestMapping("/videos")
+@CrossOrigin(origins = "*")
+public class VideoController {
+
+    @Autowired
+    private VideoStore videoStore;
+
+    // 前端播放器使用的名稱 (/videos/demo.mp4)：轉址到目前內容的 blob 路徑。
+    // 轉址本身不快取 (重新上傳後要拿到新的 blob)，blob 則可以長期快取；
+    // 播放中的影片一直讀同一個 blob，中途重新上傳也不會被換掉。
+    @GetMapping("/{fileName}")
+    public ResponseEntity<?> video(@PathVariable String fileName) {
+        try {
+            VideoStore.Located located = videoStore.locate(fileName);
+            if (located == null)
+                return ResponseEntity.notFound().build();
+            if (located.blobPath() != null) {
+                return ResponseEntity.status(HttpStatus.FOUND)
+                        .location(URI.create("/videos/" + located.blobPath()))
+                        .cacheControl(CacheControl.noCache())
+                        .build();
+            }
+            // 改成以內容雜湊儲存之前上傳的影片 (一般檔案)，直接提供 (支援 Range)
+            return ResponseEntity.ok(new FileSystemResource(located.file()));
+        } catch (IOException e) {
+            e.printStackTrace();
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).build();
+        }
+    }
+}
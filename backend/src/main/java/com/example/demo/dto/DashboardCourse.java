@@ -0,0 +1,23 @@
+package com.example.demo.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+import java.time.LocalDateTime;
+
+// 「我的課程」儀表板的一門課：進度統計與上次看到的位置
+@Data
+@AllArgsConstructor
+public class DashboardCourse {
+    private Long courseId;
+    private String title;
+    private String image;
+    private Integer totalUnits;
+    private Integer completedUnits;
+    private Integer percentComplete;
+    // 最近一次觀看的單元 (還沒開始看則為 null)
+    private String lastUnitId;
+    private String lastUnitTitle;
+    private Integer resumePositionSeconds;
+    private LocalDateTime lastWatchedAt;
+}
@@ -0,0 +1,13 @@
+package com.example.demo.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+// 使用者在某門課的有效訂單 (已付款或待付款)，前端用來判斷購買狀態
+@Data
+@AllArgsConstructor
+public class OrderCourseStatus {
+    private Long id;
+    private Long courseId;
+    private String status;
+}
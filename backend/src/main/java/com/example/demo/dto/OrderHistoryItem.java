@@ -0,0 +1,19 @@
+package com.example.demo.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+import java.time.LocalDateTime;
+
+// 訂單紀錄的扁平投影，不帶完整的 User / Course
+@Data
+@AllArgsConstructor
+public class OrderHistoryItem {
+    private Long id;
+    private String status;
+    private Long courseId;
+    private String courseTitle;
+    private String courseImage;
+    private Integer price;
+    private LocalDateTime createdAt;
+}
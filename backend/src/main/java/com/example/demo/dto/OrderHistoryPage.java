@@ -0,0 +1,13 @@
+package com.example.demo.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+import java.util.List;
+
+@Data
+@AllArgsConstructor
+public class OrderHistoryPage {
+    private List<OrderHistoryItem> items;
+    private String nextCursor; // 沒有下一頁時為 null
+}
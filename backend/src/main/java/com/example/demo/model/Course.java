@@ -1,10 +1,12 @@
 package com.example.demo.model;
 
+import com.example.demo.service.SyllabusCacheListener;
 import jakarta.persistence.*;
 import lombok.Data;
 
 @Entity
 @Table(name = "courses")
+@EntityListeners(SyllabusCacheListener.class)
 @Data
 public class Course {
     @Id
@@ -0,0 +1,16 @@
+package com.example.demo.model;
+
+import jakarta.persistence.*;
+import lombok.Data;
+
+// 課程統計 (由 FunnelStatsService 定期累加寫入，可從 orders 重新計算)
+@Entity
+@Table(name = "course_stats")
+@Data
+public class CourseStats {
+    @Id
+    private Long courseId;
+
+    // 已購買 (PAID) 的人數
+    private Long enrolled = 0L;
+}
@@ -5,7 +5,14 @@ import lombok.Data;
 import java.time.LocalDateTime;
 
 @Entity
-@Table(name = "orders")
+@Table(name = "orders", indexes = {
+        // existsByUserAndCourseAndStatus / findByUserAndCourseAndStatus
+        @Index(name = "idx_orders_user_course_status", columnList = "user_id, course_id, status"),
+        // 逾期訂單清理
+        @Index(name = "idx_orders_status_created", columnList = "status, createdAt"),
+        // 訂單紀錄分頁
+        @Index(name = "idx_orders_user_created_id", columnList = "user_id, createdAt DESC, id DESC")
+})
 @Data
 public class Order {
     @Id
@@ -0,0 +1,48 @@
+package com.example.demo.model;
+
+import jakarta.persistence.*;
+import lombok.Data;
+import java.time.LocalDateTime;
+
+// 交易式 outbox：與業務資料在同一個交易內寫入，由 OutboxDispatcher 在背景分派給各個 OutboxHandler
+@Entity
+// 分派用的索引 idx_outbox_pending 只涵蓋尚未處理的事件 (部分索引)，@Index 無法表示，由 OutboxDispatcher 建立
+@Table(name = "outbox_events")
+@Data
+public class OutboxEvent {
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(nullable = false)
+    private String eventType;
+
+    // JSON
+    @Column(columnDefinition = "TEXT", nullable = false)
+    private String payload;
+
+    private LocalDateTime createdAt;
+
+    // 下一次可以被分派的時間 (重試退避、或被其他節點領取中)
+    private LocalDateTime availableAt;
+
+    private Integer attempts = 0;
+
+    // 所有 handler 都成功 (或重試次數用完) 的時間
+    private LocalDateTime processedAt;
+
+    @Column(columnDefinition = "TEXT")
+    private String lastError;
+
+    // 已經成功處理過的 handler 名稱 (逗號分隔)，重試時略過，避免重複執行
+    @Column(columnDefinition = "TEXT")
+    private String completedHandlers;
+
+    @PrePersist
+    protected void onCreate() {
+        if (createdAt == null)
+            createdAt = LocalDateTime.now();
+        if (availableAt == null)
+            availableAt = createdAt;
+    }
+}
@@ -2,11 +2,13 @@ package com.example.demo.model;
 
 import jakarta.persistence.*;
 import lombok.Data;
+import org.hibernate.annotations.PartitionKey;
 import java.time.LocalDateTime;
 
 @Entity
+// 實際儲存為依 course_id 分割的資料表，見 UnitProgressPartitionManager (約束名稱需與其 DDL 一致)
 @Table(name = "unit_progress", uniqueConstraints = {
-        @UniqueConstraint(columnNames = { "user_id", "course_id", "unitId" })
+        @UniqueConstraint(name = "uk_unit_progress_user_course_unit", columnNames = { "user_id", "course_id", "unitId" })
 })
 @Data
 public class UnitProgress {
@@ -15,13 +17,18 @@ public class UnitProgress {
     private Long id;
 
     @ManyToOne
-    @JoinColumn(name = "user_id", nullable = false)
+    @JoinColumn(name = "user_id", nullable = false, foreignKey = @ForeignKey(name = "fk_unit_progress_user"))
     private User user;
 
     @ManyToOne
-    @JoinColumn(name = "course_id", nullable = false)
+    @JoinColumn(name = "course_id", nullable = false, foreignKey = @ForeignKey(name = "fk_unit_progress_course"))
     private Course course;
 
+    // 分割欄位 (與 course 同一欄，唯讀)：讓 Hibernate 的 UPDATE / DELETE 條件帶上 course_id，只會動到單一 partition
+    @PartitionKey
+    @Column(name = "course_id", insertable = false, updatable = false)
+    private Long courseId;
+
     @Column(nullable = false)
     private String unitId;
 
@@ -40,5 +47,7 @@ public class UnitProgress {
     @PrePersist
     protected void onUpdate() {
         updatedAt = LocalDateTime.now();
+        if (courseId == null && course != null)
+            courseId = course.getId();
     }
 }
\ No newline at end of file
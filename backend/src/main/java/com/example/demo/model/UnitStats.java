@@ -0,0 +1,32 @@
+package com.example.demo.model;
+
+import jakarta.persistence.*;
+import lombok.Data;
+
+// 單元統計 (由 FunnelStatsService 定期累加寫入，可從 unit_progress 重新計算)
+@Entity
+@Table(name = "unit_stats", uniqueConstraints = {
+        @UniqueConstraint(name = "uk_unit_stats_course_unit", columnNames = { "courseId", "unitId" })
+})
+@Data
+public class UnitStats {
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(nullable = false)
+    private Long courseId;
+
+    @Column(nullable = false)
+    private String unitId;
+
+    // 有進度紀錄 (開始看) 的人數
+    private Long started = 0L;
+
+    private Long completed = 0L;
+
+    private Long delivered = 0L;
+
+    // 所有人 progressPercent 的總和，平均進度 = progressSum / started
+    private Long progressSum = 0L;
+}
@@ -0,0 +1,7 @@
+package com.example.demo.repository;
+
+import com.example.demo.model.CourseStats;
+import org.springframework.data.jpa.repository.JpaRepository;
+
+public interface CourseStatsRepository extends JpaRepository<CourseStats, Long> {
+}
@@ -1,17 +1,60 @@
 package com.example.demo.repository;
 
+import com.example.demo.dto.OrderCourseStatus;
+import com.example.demo.dto.OrderHistoryItem;
 import com.example.demo.model.Course;
 import com.example.demo.model.Order;
 import com.example.demo.model.User;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
+import java.time.LocalDateTime;
 import java.util.List;
 import java.util.Optional;
 
 public interface OrderRepository extends JpaRepository<Order, Long> {
-    List<Order> findByUserOrderByCreatedAtDesc(User user);
+    // 有效訂單 (PAID / PENDING)：每門課至多各一筆，筆數以課程數為上限，不載入 User / Course
+    @Query("SELECT new com.example.demo.dto.OrderCourseStatus(o.id, o.course.id, o.status) " +
+            "FROM Order o WHERE o.user.id = :userId AND o.status IN ('PAID', 'PENDING') " +
+            "ORDER BY o.createdAt DESC, o.id DESC")
+    List<OrderCourseStatus> findActiveStatuses(@Param("userId") Long userId);
     
     // 檢查是否有特定狀態的訂單 (用於檢查是否已購買，或是否有待付款訂單)
     Optional<Order> findByUserAndCourseAndStatus(User user, Course course, String status);
     
     boolean existsByUserAndCourseAndStatus(User user, Course course, String status);
+
+    // 訂單紀錄分頁 (keyset)：以 (createdAt, id) 為游標，走 idx_orders_user_created_id
+    @Query("SELECT new com.example.demo.dto.OrderHistoryItem(o.id, o.status, c.id, c.title, c.image, c.price, o.createdAt) " +
+            "FROM Order o JOIN o.course c WHERE o.user.id = :userId " +
+            "ORDER BY o.createdAt DESC, o.id DESC")
+    List<OrderHistoryItem> findHistory(@Param("userId") Long userId, Limit limit);
+
+    @Query("SELECT new com.example.demo.dto.OrderHistoryItem(o.id, o.status, c.id, c.title, c.image, c.price, o.createdAt) " +
+            "FROM Order o JOIN o.course c WHERE o.user.id = :userId " +
+            "AND (o.createdAt, o.id) < (:createdAt, :id) " +
+            "ORDER BY o.createdAt DESC, o.id DESC")
+    List<OrderHistoryItem> findHistoryBefore(@Param("userId") Long userId,
+                                             @Param("createdAt") LocalDateTime createdAt,
+                                             @Param("id") Long id,
+                                             Limit limit);
+
+    // 條件式更新：只有目前仍為 PENDING 的訂單才能付款，避免與逾期清理互相覆蓋
+    @Transactional
+    @Modifying(clearAutomatically = true)
+    @Query("UPDATE Order o SET o.status = 'PAID', o.paymentMethod = :paymentMethod, " +
+            "o.invoiceType = :invoiceType, o.invoiceCarrier = :invoiceCarrier " +
+            "WHERE o.id = :id AND o.status = 'PENDING'")
+    int markPaid(@Param("id") Long id,
+                 @Param("paymentMethod") String paymentMethod,
+                 @Param("invoiceType") String invoiceType,
+                 @Param("invoiceCarrier") String invoiceCarrier);
+
+    @Transactional
+    @Modifying(clearAutomatically = true)
+    @Query("UPDATE Order o SET o.status = :to WHERE o.id = :id AND o.status = :from")
+    int updateStatusIfCurrent(@Param("id") Long id, @Param("from") String from, @Param("to") String to);
 }
\ No newline at end of file
@@ -4,6 +4,11 @@ import com.example.demo.model.UnitProgress;
 import com.example.demo.model.User;
 import com.example.demo.model.Course;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
+import java.time.LocalDateTime;
 import java.util.List;
 import java.util.Optional;
 
@@ -13,4 +18,15 @@ public interface UnitProgressRepository extends JpaRepository<UnitProgress, Long
     
     // 查詢特定單元的進度
     Optional<UnitProgress> findByUserAndCourseAndUnitId(User user, Course course, String unitId);
-}
\ No newline at end of file
+
+    // 已完成且尚未交付才標記為已交付 (條件式更新，同一單元同時送出兩次只有一次會成功)
+    @Transactional
+    @Modifying
+    @Query("UPDATE UnitProgress p SET p.delivered = true, p.updatedAt = :now " +
+            "WHERE p.user = :user AND p.course = :course AND p.unitId = :unitId " +
+            "AND p.completed = true AND p.delivered = false")
+    int markDelivered(@Param("user") User user,
+                      @Param("course") Course course,
+                      @Param("unitId") String unitId,
+                      @Param("now") LocalDateTime now);
+}
@@ -0,0 +1,9 @@
+package com.example.demo.repository;
+
+import com.example.demo.model.UnitStats;
+import org.springframework.data.jpa.repository.JpaRepository;
+import java.util.List;
+
+public interface UnitStatsRepository extends JpaRepository<UnitStats, Long> {
+    List<UnitStats> findByCourseId(Long courseId);
+}
@@ -2,9 +2,26 @@ package com.example.demo.repository;
 
 import com.example.demo.model.User;
 import com.example.demo.model.UserLevel;
+import jakarta.persistence.LockModeType;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.transaction.annotation.Transactional;
 import java.util.Optional;
 
 public interface UserLevelRepository extends JpaRepository<UserLevel, Long> {
     Optional<UserLevel> findByUser(User user);
+
+    // 交付單元時在交易內鎖住，避免同時交付兩個單元時經驗值互相覆蓋
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    Optional<UserLevel> findWithLockByUser(User user);
+
+    // 一次補齊所有缺少 UserLevel 的使用者 (單一 INSERT ... SELECT，不逐筆查詢)
+    @Transactional
+    @Modifying
+    @Query(value = "INSERT INTO user_levels (user_id, level, current_exp, next_level_threshold) " +
+            "SELECT u.id, 1, 0, 100 FROM users u " +
+            "WHERE NOT EXISTS (SELECT 1 FROM user_levels ul WHERE ul.user_id = u.id)", nativeQuery = true)
+    int createMissingLevels();
 }
\ No newline at end of file
@@ -0,0 +1,301 @@
+package com.example.demo.service;
+
+import com.example.demo.repository.UserRepository;
+import com.zaxxer.hikari.HikariDataSource;
+import com.zaxxer.hikari.HikariPoolMXBean;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.util.AntPathMatcher;
+
+import javax.sql.DataSource;
+import java.sql.SQLException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+// 入口流量控制：依優先等級限制併發數，並對每個使用者做速率限制。
+// 速率限制以驗證過的使用者 id 區分；沒有 token 或 token 還沒驗證過的請求以來源 IP 區分，
+// 偽造的 token 不會拿到新的額度。token 在請求放行後才查資料庫，驗證過的結果快取一段時間。
+// 熱門課程上線時大量的進度心跳 (updateProgress) 會先被擋下，保留執行緒與 DB 連線給結帳與登入。
+@Service
+public class AdmissionControlService {
+
+    private static final PriorityClass[] CLASSES = PriorityClass.values();
+    private static final AntPathMatcher PATH_MATCHER = new AntPathMatcher();
+
+    @Autowired
+    private DataSource dataSource;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    // 全站同時處理中的請求上限
+    @Value("${app.admission.max-concurrent:200}")
+    private int maxConcurrent;
+
+    // 各等級可使用的併發比例：超過比例後該等級的新請求直接被拒絕
+    @Value("${app.admission.share.checkout:1.0}")
+    private double checkoutShare;
+
+    @Value("${app.admission.share.login:0.9}")
+    private double loginShare;
+
+    @Value("${app.admission.share.catalog:0.75}")
+    private double catalogShare;
+
+    @Value("${app.admission.share.heartbeat:0.5}")
+    private double heartbeatShare;
+
+    // 等待 DB 連線的執行緒達到這個數量就不再放行心跳；0 表示取連線池大小的一半。
+    // 等待連線的人數代表連線池已經全部在用、後面還排著多少請求，排到半個連線池時再放行心跳只會拖慢結帳與登入
+    @Value("${app.admission.heartbeat-max-db-waiters:0}")
+    private int heartbeatMaxDbWaiters;
+
+    // 每個使用者每秒可送出的請求數與突發量 (0 表示不限制)
+    @Value("${app.admission.rate.checkout:5}")
+    private double checkoutRate;
+
+    @Value("${app.admission.rate.login:2}")
+    private double loginRate;
+
+    @Value("${app.admission.rate.catalog:20}")
+    private double catalogRate;
+
+    @Value("${app.admission.rate.heartbeat:0.5}")
+    private double heartbeatRate;
+
+    @Value("${app.admission.burst:5}")
+    private int burst;
+
+    @Value("${app.admission.retry-after-seconds:5}")
+    private int overloadRetryAfterSeconds;
+
+    // 驗證過的 token 快取多久、最多幾筆 (滿了就不再快取，改以 IP 限流直到過期清除)
+    @Value("${app.admission.token-cache-ms:300000}")
+    private long tokenCacheMillis;
+
+    @Value("${app.admission.token-cache-size:100000}")
+    private int tokenCacheSize;
+
+    private final long epochNanos = System.nanoTime();
+
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final int[] concurrencyLimits = new int[CLASSES.length];
+    private final long[] emissionIntervals = new long[CLASSES.length];
+    private final ClassStats[] stats = new ClassStats[CLASSES.length];
+
+    // key = 等級 + 使用者 id 或來源 IP；ConcurrentHashMap 以 bin 為單位分段 CAS，讀取與更新都不需要全域鎖
+    private final ConcurrentHashMap<String, TokenBucket> buckets = new ConcurrentHashMap<>();
+
+    // token → 使用者 id，只放查得到的 token
+    private final ConcurrentHashMap<String, VerifiedToken> verifiedTokens = new ConcurrentHashMap<>();
+
+    private HikariDataSource hikari;
+
+    @PostConstruct
+    void init() {
+        double[] shares = { checkoutShare, loginShare, catalogShare, heartbeatShare };
+        double[] rates = { checkoutRate, loginRate, catalogRate, heartbeatRate };
+        for (PriorityClass pc : CLASSES) {
+            int i = pc.ordinal();
+            concurrencyLimits[i] = Math.max(1, (int) (maxConcurrent * shares[i]));
+            emissionIntervals[i] = rates[i] > 0 ? (long) (TimeUnit.SECONDS.toNanos(1) / rates[i]) : 0;
+            stats[i] = new ClassStats();
+        }
+        try {
+            if (dataSource.isWrapperFor(HikariDataSource.class)) {
+                hikari = dataSource.unwrap(HikariDataSource.class);
+            }
+        } catch (SQLException e) {
+            hikari = null;
+        }
+        if (heartbeatMaxDbWaiters <= 0) {
+            heartbeatMaxDbWaiters = hikari != null ? Math.max(1, hikari.getMaximumPoolSize() / 2) : 1;
+        }
+    }
+
+    // 連線池在第一次取得連線時才建立，因此每次都重新取得 MXBean
+    private HikariPoolMXBean pool() {
+        return hikari != null ? hikari.getHikariPoolMXBean() : null;
+    }
+
+    public PriorityClass classify(String method, String path) {
+        if (path.startsWith("/api/auth/")) {
+            return PriorityClass.LOGIN;
+        }
+        if (("POST".equals(method) && path.equals("/api/orders"))
+                || ("PUT".equals(method) && PATH_MATCHER.match("/api/orders/*/pay", path))) {
+            return PriorityClass.CHECKOUT;
+        }
+        if ("POST".equals(method) && PATH_MATCHER.match("/api/progress/courses/*/units/*", path)) {
+            return PriorityClass.HEARTBEAT;
+        }
+        return PriorityClass.CATALOG;
+    }
+
+    // 速率限制用的 key：驗證過的 token 用使用者 id，其他用來源 IP；該等級不限流時回傳 null
+    public String clientKey(PriorityClass pc, String authHeader, String remoteAddr) {
+        if (emissionIntervals[pc.ordinal()] == 0)
+            return null;
+        String token = bearerToken(authHeader);
+        VerifiedToken verified = token == null ? null : verifiedTokens.get(token);
+        if (verified != null && verified.expiresAt() > System.nanoTime())
+            return "user:" + verified.userId();
+        return "ip:" + remoteAddr;
+    }
+
+    // 請求放行後才驗證 token (偽造 token 的請求先受 IP 限流)，之後同一個 token 以使用者 id 限流
+    public void rememberToken(PriorityClass pc, String authHeader) {
+        if (emissionIntervals[pc.ordinal()] == 0)
+            return;
+        String token = bearerToken(authHeader);
+        if (token == null || verifiedTokens.size() >= tokenCacheSize)
+            return;
+        VerifiedToken verified = verifiedTokens.get(token);
+        if (verified != null && verified.expiresAt() > System.nanoTime())
+            return;
+        userRepository.findByToken(token).ifPresent(user -> verifiedTokens.put(token,
+                new VerifiedToken(user.getId(), System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(tokenCacheMillis))));
+    }
+
+    private static String bearerToken(String authHeader) {
+        if (authHeader == null || !authHeader.startsWith("Bearer "))
+            return null;
+        String token = authHeader.substring("Bearer ".length());
+        return token.isBlank() ? null : token;
+    }
+
+    // 嘗試放行請求；放行後呼叫端在請求結束時必須呼叫 release。
+    // 先檢查是否過載，佔到名額後才扣使用者的額度：過載被拒絕 (503) 的請求不會把額度用掉
+    public Decision tryAdmit(PriorityClass pc, String clientKey) {
+        ClassStats s = stats[pc.ordinal()];
+
+        HikariPoolMXBean pool = pool();
+        if (pc == PriorityClass.HEARTBEAT && pool != null
+                && pool.getThreadsAwaitingConnection() >= heartbeatMaxDbWaiters) {
+            s.shed.increment();
+            return Decision.rejected(503, overloadRetryAfterSeconds);
+        }
+
+        int limit = concurrencyLimits[pc.ordinal()];
+        for (;;) {
+            int current = inFlight.get();
+            if (current >= limit) {
+                s.shed.increment();
+                return Decision.rejected(503, overloadRetryAfterSeconds);
+            }
+            if (inFlight.compareAndSet(current, current + 1)) {
+                break;
+            }
+        }
+
+        long wait = acquireToken(pc, clientKey);
+        if (wait > 0) {
+            inFlight.decrementAndGet();
+            s.rateLimited.increment();
+            return Decision.rejected(429, toRetryAfterSeconds(wait));
+        }
+
+        s.admitted.increment();
+        int active = s.inFlight.incrementAndGet();
+        s.peakInFlight.accumulateAndGet(active, Math::max);
+        return Decision.ADMITTED;
+    }
+
+    public void release(PriorityClass pc) {
+        stats[pc.ordinal()].inFlight.decrementAndGet();
+        inFlight.decrementAndGet();
+    }
+
+    // GCRA 版本的 token bucket：以單一 AtomicLong 記錄「理論到達時間」，CAS 更新不需上鎖
+    private long acquireToken(PriorityClass pc, String clientKey) {
+        long interval = emissionIntervals[pc.ordinal()];
+        if (interval == 0 || clientKey == null) {
+            return 0;
+        }
+        long now = System.nanoTime() - epochNanos;
+        long tolerance = interval * (Math.max(burst, 1) - 1);
+        TokenBucket bucket = buckets.computeIfAbsent(pc.ordinal() + ":" + clientKey, k -> new TokenBucket());
+        for (;;) {
+            long tat = bucket.tat.get();
+            long base = Math.max(tat, now);
+            if (base - now > tolerance) {
+                return base - now - tolerance;
+            }
+            if (bucket.tat.compareAndSet(tat, base + interval)) {
+                return 0;
+            }
+        }
+    }
+
+    private static int toRetryAfterSeconds(long waitNanos) {
+        return (int) Math.max(1, TimeUnit.NANOSECONDS.toSeconds(waitNanos + TimeUnit.SECONDS.toNanos(1) - 1));
+    }
+
+    // 已完全回補的 bucket 等同不存在，定期移除避免 map 無限成長
+    @Scheduled(fixedDelayString = "${app.admission.bucket-cleanup-ms:60000}")
+    public void evictIdleBuckets() {
+        long now = System.nanoTime() - epochNanos;
+        buckets.values().removeIf(b -> b.tat.get() < now);
+        long nanoNow = System.nanoTime();
+        verifiedTokens.values().removeIf(t -> t.expiresAt() <= nanoNow);
+    }
+
+    public Map<String, Object> snapshot() {
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("maxConcurrent", maxConcurrent);
+        result.put("inFlight", inFlight.get());
+        result.put("trackedBuckets", buckets.size());
+        result.put("verifiedTokens", verifiedTokens.size());
+        result.put("heartbeatMaxDbWaiters", heartbeatMaxDbWaiters);
+        HikariPoolMXBean pool = pool();
+        if (pool != null) {
+            result.put("dbActiveConnections", pool.getActiveConnections());
+            result.put("dbThreadsAwaitingConnection", pool.getThreadsAwaitingConnection());
+        }
+        Map<String, Object> classes = new LinkedHashMap<>();
+        for (PriorityClass pc : CLASSES) {
+            ClassStats s = stats[pc.ordinal()];
+            Map<String, Object> c = new LinkedHashMap<>();
+            c.put("concurrencyLimit", concurrencyLimits[pc.ordinal()]);
+            c.put("inFlight", s.inFlight.get());
+            c.put("peakInFlight", s.peakInFlight.get());
+            c.put("admitted", s.admitted.sum());
+            c.put("shed", s.shed.sum());
+            c.put("rateLimited", s.rateLimited.sum());
+            classes.put(pc.name(), c);
+        }
+        result.put("classes", classes);
+        return result;
+    }
+
+    public record Decision(boolean admitted, int status, int retryAfterSeconds) {
+        static final Decision ADMITTED = new Decision(true, 200, 0);
+
+        static Decision rejected(int status, int retryAfterSeconds) {
+            return new Decision(false, status, retryAfterSeconds);
+        }
+    }
+
+    private record VerifiedToken(Long userId, long expiresAt) {
+    }
+
+    private static final class TokenBucket {
+        private final AtomicLong tat = new AtomicLong();
+    }
+
+    private static final class ClassStats {
+        private final LongAdder admitted = new LongAdder();
+        private final LongAdder shed = new LongAdder();
+        private final LongAdder rateLimited = new LongAdder();
+        private final AtomicInteger inFlight = new AtomicInteger();
+        private final AtomicInteger peakInFlight = new AtomicInteger();
+    }
+}
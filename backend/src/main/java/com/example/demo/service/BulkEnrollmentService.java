@@ -0,0 +1,234 @@
+package com.example.demo.service;
+
+import org.postgresql.PGConnection;
+import org.postgresql.copy.CopyManager;
+import org.postgresql.copy.PGCopyOutputStream;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.SingleConnectionDataSource;
+import org.springframework.stereotype.Service;
+
+import javax.sql.DataSource;
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+// 企業客戶大量開課：CSV (email,name,courseId[,password]) 逐行串流進暫存表，
+// 再用幾個集合式 SQL 一次建立使用者與已付款訂單，不需要把整個檔案載入記憶體。
+@Service
+public class BulkEnrollmentService {
+
+    @Autowired
+    private DataSource dataSource;
+
+    @Autowired
+    private FunnelStatsService funnelStatsService;
+
+    // 每一行的處理結果會寫進 report (CSV)：row_no,email,course_id,result,user_created
+    // result: ENROLLED / ALREADY_ENROLLED / DUPLICATE / COURSE_NOT_FOUND / INVALID
+    // 匯入在自己的交易中完成，提交成功後才輸出報表，報表上的 ENROLLED 一定已經寫入資料庫
+    public void importCsv(InputStream csv, OutputStream report) throws IOException, SQLException {
+        // COPY、合併與報表都必須在同一條連線上 (暫存表是 session 範圍)，
+        // 而報表要在提交之後才輸出，所以這裡自己管理這條連線的交易，不走 @Transactional
+        try (Connection connection = dataSource.getConnection()) {
+            PGConnection pgConnection = connection.unwrap(PGConnection.class);
+            JdbcTemplate jdbc = new JdbcTemplate(new SingleConnectionDataSource(connection, true));
+
+            List<Map<String, Object>> enrolled;
+            connection.setAutoCommit(false);
+            try {
+                jdbc.execute("CREATE TEMP TABLE enrollment_staging (" +
+                        "row_no BIGINT, email TEXT, name TEXT, password TEXT, course_id BIGINT, " +
+                        "result TEXT, user_created BOOLEAN NOT NULL DEFAULT FALSE)");
+
+                copyIntoStaging(pgConnection, csv);
+                merge(jdbc);
+                enrolled = jdbc.queryForList(
+                        "SELECT course_id, COUNT(DISTINCT email) AS enrolled FROM enrollment_staging " +
+                                "WHERE result = 'ENROLLED' GROUP BY course_id");
+                connection.commit();
+            } catch (IOException | SQLException | RuntimeException e) {
+                connection.rollback(); // 暫存表也一起回滾
+                throw e;
+            } finally {
+                connection.setAutoCommit(true);
+            }
+
+            // 已提交：把新開課的人數加進課程統計，再輸出報表
+            for (Map<String, Object> row : enrolled) {
+                funnelStatsService.enrolled(((Number) row.get("course_id")).longValue(),
+                        ((Number) row.get("enrolled")).longValue());
+            }
+            try {
+                CopyManager copyManager = pgConnection.getCopyAPI();
+                copyManager.copyOut("COPY (SELECT row_no, email, course_id, result, user_created " +
+                        "FROM enrollment_staging ORDER BY row_no) TO STDOUT WITH (FORMAT csv, HEADER)", report);
+                report.flush();
+            } finally {
+                // 連線會回到連線池，暫存表不能留給下一個使用者
+                jdbc.execute("DROP TABLE IF EXISTS enrollment_staging");
+            }
+        }
+    }
+
+    private void copyIntoStaging(PGConnection pgConnection, InputStream csv) throws IOException, SQLException {
+        BufferedReader reader = new BufferedReader(new InputStreamReader(csv, StandardCharsets.UTF_8));
+        PGCopyOutputStream copyOut = new PGCopyOutputStream(pgConnection,
+                "COPY enrollment_staging (row_no, email, name, password, course_id, result) FROM STDIN WITH (FORMAT csv)",
+                1 << 16);
+        try {
+            Writer writer = new BufferedWriter(new OutputStreamWriter(copyOut, StandardCharsets.UTF_8), 1 << 16);
+            String line;
+            long rowNo = 0;
+            while ((line = reader.readLine()) != null) {
+                rowNo++;
+                if (rowNo == 1 && line.startsWith("\uFEFF")) {
+                    line = line.substring(1); // Excel 匯出的 UTF-8 BOM
+                }
+                if (line.isBlank()) {
+                    continue;
+                }
+                List<String> fields = parseCsvLine(line);
+                // 第一行若是標題列就略過
+                if (rowNo == 1 && fields.get(0).trim().equalsIgnoreCase("email")) {
+                    continue;
+                }
+                writeStagingRow(writer, rowNo, fields);
+            }
+            writer.flush();
+            copyOut.endCopy();
+        } finally {
+            if (copyOut.isActive()) {
+                copyOut.cancelCopy();
+            }
+        }
+    }
+
+    private void writeStagingRow(Writer writer, long rowNo, List<String> fields) throws IOException {
+        String email = fields.get(0).trim();
+        String name = fields.size() > 1 ? fields.get(1).trim() : "";
+        String courseId = fields.size() > 2 ? fields.get(2).trim() : "";
+        String password = fields.size() > 3 ? fields.get(3) : "";
+
+        // users 的欄位都是 varchar(255)：email / 密碼過長視為無效，姓名則截斷 (以字元計，不切開 surrogate pair)
+        boolean valid = email.contains("@") && email.length() <= 255 && courseId.matches("\\d{1,18}")
+                && password.codePointCount(0, password.length()) <= 255;
+        if (name.isEmpty()) {
+            name = email.contains("@") ? email.substring(0, email.indexOf('@')) : email;
+        }
+        if (name.codePointCount(0, name.length()) > 255) {
+            name = name.substring(0, name.offsetByCodePoints(0, 255));
+        }
+
+        writer.write(Long.toString(rowNo));
+        writer.write(',');
+        writeQuoted(writer, email.length() > 255 ? email.substring(0, 255) : email);
+        writer.write(',');
+        writeQuoted(writer, name);
+        writer.write(',');
+        // 未加引號的空欄位在 COPY csv 中代表 NULL
+        if (!password.isEmpty()) {
+            writeQuoted(writer, password);
+        }
+        writer.write(',');
+        if (valid) {
+            writer.write(courseId);
+            writer.write(',');
+        } else {
+            writer.write(",INVALID");
+        }
+        writer.write('\n');
+    }
+
+    private void merge(JdbcTemplate jdbc) {
+        // 檔案中重複的 (email, 課程) 只處理第一行，其餘標為 DUPLICATE
+        jdbc.update("UPDATE enrollment_staging s SET result = 'DUPLICATE' FROM (" +
+                "SELECT row_no, row_number() OVER (PARTITION BY email, course_id ORDER BY row_no) AS n " +
+                "FROM enrollment_staging WHERE result IS NULL) d " +
+                "WHERE s.row_no = d.row_no AND d.n > 1");
+
+        jdbc.update("UPDATE enrollment_staging s SET result = 'COURSE_NOT_FOUND' " +
+                "WHERE s.result IS NULL AND NOT EXISTS (SELECT 1 FROM courses c WHERE c.id = s.course_id)");
+
+        // 新使用者：同一個 email 出現多次時以第一行為準，已存在的帳號不動
+        jdbc.update("WITH ins AS (" +
+                "INSERT INTO users (email, password, name, role, avatar) " +
+                "SELECT DISTINCT ON (email) email, COALESCE(password, md5(random()::text || clock_timestamp()::text)), " +
+                "name, 'STUDENT', '/images/default-avatar.png' " +
+                "FROM enrollment_staging WHERE result IS NULL ORDER BY email, row_no " +
+                "ON CONFLICT (email) DO NOTHING RETURNING email) " +
+                "UPDATE enrollment_staging s SET user_created = TRUE FROM ins WHERE s.email = ins.email");
+
+        jdbc.update("INSERT INTO user_levels (user_id, level, current_exp, next_level_threshold) " +
+                "SELECT u.id, 1, 0, 100 FROM users u " +
+                "WHERE u.email IN (SELECT email FROM enrollment_staging WHERE user_created) " +
+                "AND NOT EXISTS (SELECT 1 FROM user_levels ul WHERE ul.user_id = u.id)");
+
+        jdbc.update("WITH ins AS (" +
+                "INSERT INTO orders (user_id, course_id, status, payment_method, created_at) " +
+                "SELECT DISTINCT u.id, s.course_id, 'PAID', 'BULK', LOCALTIMESTAMP " +
+                "FROM enrollment_staging s JOIN users u ON u.email = s.email " +
+                "WHERE s.result IS NULL AND NOT EXISTS (" +
+                "SELECT 1 FROM orders o WHERE o.user_id = u.id AND o.course_id = s.course_id AND o.status = 'PAID') " +
+                "RETURNING user_id, course_id) " +
+                "UPDATE enrollment_staging s SET result = 'ENROLLED' " +
+                "FROM ins JOIN users u ON u.id = ins.user_id " +
+                "WHERE s.email = u.email AND s.course_id = ins.course_id AND s.result IS NULL");
+
+        jdbc.update("UPDATE enrollment_staging SET result = 'ALREADY_ENROLLED' WHERE result IS NULL");
+
+        // 已開課的人不需要再保留待付款訂單
+        jdbc.update("UPDATE orders o SET status = 'CANCELLED' FROM enrollment_staging s " +
+                "JOIN users u ON u.email = s.email " +
+                "WHERE s.result = 'ENROLLED' AND o.user_id = u.id AND o.course_id = s.course_id " +
+                "AND o.status = 'PENDING'");
+    }
+
+    private static void writeQuoted(Writer writer, String value) throws IOException {
+        writer.write('"');
+        writer.write(value.replace("\"", "\"\""));
+        writer.write('"');
+    }
+
+    // 簡易 CSV 解析：支援雙引號欄位與 "" 跳脫 (不支援欄位內換行)
+    static List<String> parseCsvLine(String line) {
+        List<String> fields = new ArrayList<>();
+        StringBuilder current = new StringBuilder();
+        boolean quoted = false;
+        for (int i = 0; i < line.length(); i++) {
+            char ch = line.charAt(i);
+            if (quoted) {
+                if (ch == '"') {
+                    if (i + 1 < line.length() && line.charAt(i + 1) == '"') {
+                        current.append('"');
+                        i++;
+                    } else {
+                        quoted = false;
+                    }
+                } else {
+                    current.append(ch);
+                }
+            } else if (ch == '"') {
+                quoted = true;
+            } else if (ch == ',') {
+                fields.add(current.toString());
+                current.setLength(0);
+            } else {
+                current.append(ch);
+            }
+        }
+        fields.add(current.toString());
+        return fields;
+    }
+}
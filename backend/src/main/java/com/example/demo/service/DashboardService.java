@@ -0,0 +1,93 @@
+package com.example.demo.service;
+
+import com.example.demo.dto.DashboardCourse;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Service;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+// 「我的課程」儀表板：已購買的課程連同最後觀看的單元一個查詢取回，完成的單元另外一個查詢 (與課程數無關)。
+// 單元總數、標題來自 SyllabusService 的快取，不用每次讀取、解析 syllabusJson；
+// 完成數只算目前大綱裡還有的單元。
+@Service
+public class DashboardService {
+
+    // 子查詢都是 (user_id, course_id) 範圍內的查詢，走 unit_progress 的唯一索引
+    private static final String DASHBOARD_SQL = "SELECT c.id, c.title, c.image, " +
+            "(SELECT p.unit_id FROM unit_progress p WHERE p.user_id = :userId AND p.course_id = c.id " +
+            "ORDER BY p.updated_at DESC, p.id DESC LIMIT 1) AS last_unit_id, " +
+            "(SELECT p.last_position_seconds FROM unit_progress p WHERE p.user_id = :userId AND p.course_id = c.id " +
+            "ORDER BY p.updated_at DESC, p.id DESC LIMIT 1) AS resume_position, " +
+            "(SELECT MAX(p.updated_at) FROM unit_progress p " +
+            "WHERE p.user_id = :userId AND p.course_id = c.id) AS last_watched_at " +
+            "FROM courses c " +
+            "WHERE c.id IN (SELECT o.course_id FROM orders o WHERE o.user_id = :userId AND o.status = 'PAID') " +
+            "ORDER BY last_watched_at DESC NULLS LAST, c.id";
+
+    private static final String COMPLETED_SQL = "SELECT p.course_id, p.unit_id FROM unit_progress p " +
+            "WHERE p.user_id = :userId AND p.course_id IN (:courseIds) AND p.completed = TRUE";
+
+    @Autowired
+    private NamedParameterJdbcTemplate namedParameterJdbcTemplate;
+
+    @Autowired
+    private SyllabusService syllabusService;
+
+    public List<DashboardCourse> dashboard(Long userId) {
+        List<Row> rows = namedParameterJdbcTemplate.query(DASHBOARD_SQL, new MapSqlParameterSource("userId", userId),
+                (rs, i) -> {
+                    Timestamp lastWatchedAt = rs.getTimestamp("last_watched_at");
+                    String lastUnitId = rs.getString("last_unit_id");
+                    return new Row(rs.getLong("id"), rs.getString("title"), rs.getString("image"), lastUnitId,
+                            lastUnitId == null ? null : rs.getInt("resume_position"),
+                            lastWatchedAt == null ? null : lastWatchedAt.toLocalDateTime());
+                });
+        if (rows.isEmpty())
+            return List.of();
+
+        List<Long> courseIds = rows.stream().map(Row::courseId).toList();
+        Map<Long, SyllabusService.Syllabus> syllabi = syllabusService.forCourses(courseIds);
+
+        // 已從大綱移除的單元不算
+        Map<Long, Integer> completed = new HashMap<>();
+        namedParameterJdbcTemplate.query(COMPLETED_SQL,
+                new MapSqlParameterSource("userId", userId).addValue("courseIds", courseIds), rs -> {
+                    Long courseId = rs.getLong("course_id");
+                    SyllabusService.Syllabus syllabus = syllabi.get(courseId);
+                    if (syllabus != null && syllabus.contains(rs.getString("unit_id")))
+                        completed.merge(courseId, 1, Integer::sum);
+                });
+
+        List<DashboardCourse> result = new ArrayList<>(rows.size());
+        for (Row row : rows) {
+            SyllabusService.Syllabus syllabus = syllabi.get(row.courseId());
+            int total = syllabus == null ? 0 : syllabus.getTotalUnits();
+            int done = completed.getOrDefault(row.courseId(), 0);
+            SyllabusService.Unit lastUnit = row.lastUnitId() == null || syllabus == null ? null
+                    : syllabus.getUnit(row.lastUnitId());
+            result.add(new DashboardCourse(
+                    row.courseId(),
+                    row.title(),
+                    row.image(),
+                    total,
+                    done,
+                    total == 0 ? 0 : done * 100 / total,
+                    row.lastUnitId(),
+                    lastUnit == null ? null : lastUnit.title(),
+                    row.resumePositionSeconds(),
+                    row.lastWatchedAt()));
+        }
+        return result;
+    }
+
+    private record Row(Long courseId, String title, String image, String lastUnitId,
+            Integer resumePositionSeconds, LocalDateTime lastWatchedAt) {
+    }
+}
@@ -0,0 +1,355 @@
+package com.example.demo.service;
+
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+// 把觀看事件日誌彙整成每部影片「每一秒被看了幾次」的統計 (heatmap)。
+// 同一位使用者連續兩次心跳之間的區段視為有看過；往回拖曳再看一次會再被計算一次，
+// 可以看出哪裡被重看、哪裡開始流失。
+// 彙整結果定期寫到 checkpoint，重啟後從上次的位置接著讀：
+// - 每門課一個檔案 (heatmap-c<courseId>-<世代>.snapshot)，只重寫這段期間有新心跳的課程
+// - manifest 記錄日誌讀取位置與每門課目前的檔案世代，最後以 atomic move 取代，是 checkpoint 的提交點；
+//   當機時新寫的課程檔還沒被 manifest 引用，重啟後照舊的 manifest 載入並從舊位置重讀，不會重複計算
+@Service
+public class EngagementHeatmapService {
+
+    private static final int SNAPSHOT_VERSION = 2;
+
+    // 舊版把所有課程寫在同一個 heatmap.snapshot，升級後第一次 checkpoint 時轉成新格式
+    private static final int LEGACY_SNAPSHOT_VERSION = 1;
+
+    private static final Pattern COURSE_FILE = Pattern.compile("heatmap-c(\\d+)-(\\d+)\\.snapshot");
+
+    // 心跳間隔約 10 秒；超過這個間隔就不把兩次心跳之間當成連續觀看
+    private static final long MAX_GAP_MILLIS = 60_000;
+
+    // 影片長度上限 (秒)，避免異常的 position 讓陣列無限長大
+    private static final int MAX_SECONDS = 6 * 60 * 60;
+
+    @Autowired
+    private WatchEventJournal journal;
+
+    // 日誌至少保留幾個已彙整完的區段 (方便重新計算)
+    @Value("${app.journal.retain-segments:4}")
+    private int retainSegments;
+
+    // courseId -> (unitId -> 每一秒的觀看次數)
+    private final Map<Long, Map<String, AtomicIntegerArray>> heatmaps = new ConcurrentHashMap<>();
+
+    // 以下只有彙整執行緒會存取
+    // manifest 目前引用的各課程檔案世代
+    private final Map<Long, Long> courseGenerations = new HashMap<>();
+    // 上次 checkpoint 之後有新資料的課程
+    private final Set<Long> dirtyCourses = new HashSet<>();
+    private long generation;
+    private boolean legacyLoaded;
+
+    // 每位觀看者上一次心跳的位置與時間，key: userId:courseId:unitId，value: {position, timestamp}
+    // 只有彙整執行緒會存取
+    private final Map<String, long[]> lastSeen = new HashMap<>();
+
+    private long segment;
+    private int slot;
+    private boolean dirty;
+
+    @PostConstruct
+    void load() {
+        if (!journal.isEnabled())
+            return;
+        try {
+            if (Files.exists(manifestPath())) {
+                loadManifest();
+            } else if (Files.exists(legacySnapshotPath())) {
+                loadLegacySnapshot();
+            }
+        } catch (IOException e) {
+            // checkpoint 損毀就從頭重新彙整目前還保留的日誌
+            e.printStackTrace();
+            heatmaps.clear();
+            courseGenerations.clear();
+            dirtyCourses.clear();
+            legacyLoaded = false;
+            segment = 0;
+            slot = 0;
+        }
+        deleteUnreferencedCourseFiles();
+    }
+
+    private void loadManifest() throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(manifestPath())))) {
+            if (in.readInt() != SNAPSHOT_VERSION)
+                return;
+            segment = in.readLong();
+            slot = in.readInt();
+            generation = in.readLong();
+            int count = in.readInt();
+            for (int i = 0; i < count; i++) {
+                courseGenerations.put(in.readLong(), in.readLong());
+            }
+        }
+        for (Map.Entry<Long, Long> entry : courseGenerations.entrySet()) {
+            Map<String, AtomicIntegerArray> units = new ConcurrentHashMap<>();
+            try (DataInputStream in = new DataInputStream(new BufferedInputStream(
+                    Files.newInputStream(coursePath(entry.getKey(), entry.getValue()))))) {
+                int count = in.readInt();
+                for (int i = 0; i < count; i++) {
+                    units.put(in.readUTF(), readViews(in));
+                }
+            }
+            heatmaps.put(entry.getKey(), units);
+        }
+    }
+
+    private void loadLegacySnapshot() throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(legacySnapshotPath())))) {
+            if (in.readInt() != LEGACY_SNAPSHOT_VERSION)
+                return;
+            segment = in.readLong();
+            slot = in.readInt();
+            int count = in.readInt();
+            for (int i = 0; i < count; i++) {
+                String key = in.readUTF(); // courseId:unitId
+                int separator = key.indexOf(':');
+                Long courseId = Long.valueOf(key.substring(0, separator));
+                heatmaps.computeIfAbsent(courseId, id -> new ConcurrentHashMap<>())
+                        .put(key.substring(separator + 1), readViews(in));
+            }
+        }
+        // 下一次彙整就把所有課程寫成新格式
+        dirtyCourses.addAll(heatmaps.keySet());
+        dirty = true;
+        legacyLoaded = true;
+    }
+
+    private static AtomicIntegerArray readViews(DataInputStream in) throws IOException {
+        int length = in.readInt();
+        AtomicIntegerArray views = new AtomicIntegerArray(length);
+        for (int s = 0; s < length; s++) {
+            views.set(s, in.readInt());
+        }
+        return views;
+    }
+
+    @Scheduled(fixedDelayString = "${app.journal.aggregate-ms:5000}")
+    public synchronized void aggregate() {
+        if (!journal.isEnabled())
+            return;
+
+        List<Long> segments = journal.listSegments();
+        for (Long index : segments) {
+            if (index < segment)
+                continue;
+            if (index > segment) {
+                segment = index;
+                slot = 0;
+            }
+            WatchEventJournal.ReadResult result = journal.read(segment, slot, this::fold);
+            if (result.nextSlot() != slot) {
+                slot = result.nextSlot();
+                dirty = true;
+            }
+            if (!result.segmentComplete())
+                break;
+        }
+
+        if (dirty) {
+            evictIdleViewers();
+            // checkpoint 寫入失敗就保留日誌，下次再試
+            if (writeSnapshot()) {
+                journal.deleteSegmentsBefore(segment, retainSegments);
+                dirty = false;
+            }
+        }
+    }
+
+    public int[] heatmap(Long courseId, String unitId) {
+        Map<String, AtomicIntegerArray> units = heatmaps.get(courseId);
+        AtomicIntegerArray views = units == null ? null : units.get(unitId);
+        if (views == null)
+            return new int[0];
+        int[] result = new int[views.length()];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = views.get(i);
+        }
+        // 去掉尾端沒有人看過的部分
+        int length = result.length;
+        while (length > 0 && result[length - 1] == 0) {
+            length--;
+        }
+        return length == result.length ? result : Arrays.copyOf(result, length);
+    }
+
+    private void fold(long userId, long courseId, String unitId, int position, long timestamp) {
+        if (position < 0 || position >= MAX_SECONDS)
+            return;
+        String viewer = userId + ":" + courseId + ":" + unitId;
+        long[] previous = lastSeen.get(viewer);
+        int from = position;
+        if (previous != null) {
+            long elapsed = timestamp - previous[1];
+            int watched = position - (int) previous[0];
+            // 與正常播放速度相符 (容許倍速播放) 才視為連續觀看，否則是拖曳或重新開始
+            if (elapsed > 0 && elapsed <= MAX_GAP_MILLIS && watched > 0 && watched <= elapsed / 1000 * 2 + 5) {
+                from = (int) previous[0] + 1; // 上一次心跳的那一秒已經算過
+            }
+        }
+        lastSeen.put(viewer, new long[] { position, timestamp });
+
+        Map<String, AtomicIntegerArray> units = heatmaps.computeIfAbsent(courseId, id -> new ConcurrentHashMap<>());
+        AtomicIntegerArray views = units.get(unitId);
+        if (views == null || views.length() <= position) {
+            views = grow(views, position + 1);
+            units.put(unitId, views);
+        }
+        for (int s = from; s <= position; s++) {
+            views.incrementAndGet(s);
+        }
+        dirtyCourses.add(courseId);
+    }
+
+    // 只有彙整執行緒會替換陣列；API 讀到舊陣列頂多少了最新的幾筆
+    private static AtomicIntegerArray grow(AtomicIntegerArray views, int minLength) {
+        int length = Math.max(minLength, views == null ? 0 : Math.min(views.length() * 2, MAX_SECONDS));
+        AtomicIntegerArray grown = new AtomicIntegerArray(length);
+        if (views != null) {
+            for (int i = 0; i < views.length(); i++) {
+                grown.set(i, views.get(i));
+            }
+        }
+        return grown;
+    }
+
+    private void evictIdleViewers() {
+        long cutoff = System.currentTimeMillis() - MAX_GAP_MILLIS;
+        Iterator<long[]> it = lastSeen.values().iterator();
+        while (it.hasNext()) {
+            if (it.next()[1] < cutoff) {
+                it.remove();
+            }
+        }
+    }
+
+    // 有變動的課程寫成新世代的檔案，全部寫完後才替換 manifest，最後刪掉被取代的舊檔。
+    // manifest 先寫到暫存檔再以 atomic move 取代，寫到一半當機也不會留下損毀的 checkpoint
+    private boolean writeSnapshot() {
+        long next = generation + 1;
+        List<Long> written = new ArrayList<>();
+        try {
+            for (Long courseId : dirtyCourses) {
+                Map<String, AtomicIntegerArray> units = heatmaps.get(courseId);
+                written.add(courseId);
+                try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+                        Files.newOutputStream(coursePath(courseId, next))))) {
+                    out.writeInt(units.size());
+                    for (Map.Entry<String, AtomicIntegerArray> entry : units.entrySet()) {
+                        AtomicIntegerArray views = entry.getValue();
+                        out.writeUTF(entry.getKey());
+                        out.writeInt(views.length());
+                        for (int s = 0; s < views.length(); s++) {
+                            out.writeInt(views.get(s));
+                        }
+                    }
+                }
+            }
+
+            Map<Long, Long> generations = new HashMap<>(courseGenerations);
+            for (Long courseId : written) {
+                generations.put(courseId, next);
+            }
+            Path file = manifestPath();
+            Path tmp = file.resolveSibling(file.getFileName() + ".tmp");
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tmp)))) {
+                out.writeInt(SNAPSHOT_VERSION);
+                out.writeLong(segment);
+                out.writeInt(slot);
+                out.writeLong(next);
+                out.writeInt(generations.size());
+                for (Map.Entry<Long, Long> entry : generations.entrySet()) {
+                    out.writeLong(entry.getKey());
+                    out.writeLong(entry.getValue());
+                }
+            }
+            Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            e.printStackTrace();
+            // 還沒被 manifest 引用的新檔直接丟掉，變動的課程留到下次再寫
+            for (Long courseId : written) {
+                deleteQuietly(coursePath(courseId, next));
+            }
+            return false;
+        }
+
+        for (Long courseId : written) {
+            Long previous = courseGenerations.put(courseId, next);
+            if (previous != null) {
+                deleteQuietly(coursePath(courseId, previous));
+            }
+        }
+        generation = next;
+        dirtyCourses.clear();
+        if (legacyLoaded) {
+            deleteQuietly(legacySnapshotPath());
+            legacyLoaded = false;
+        }
+        return true;
+    }
+
+    // 上次當機前寫了一半、沒有被 manifest 引用的課程檔
+    private void deleteUnreferencedCourseFiles() {
+        try (Stream<Path> files = Files.list(journal.directory())) {
+            files.forEach(path -> {
+                Matcher m = COURSE_FILE.matcher(path.getFileName().toString());
+                if (m.matches() && !Long.valueOf(m.group(2)).equals(courseGenerations.get(Long.valueOf(m.group(1))))) {
+                    deleteQuietly(path);
+                }
+            });
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    private static void deleteQuietly(Path path) {
+        try {
+            Files.deleteIfExists(path);
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    private Path manifestPath() {
+        return journal.directory().resolve("heatmap.manifest");
+    }
+
+    private Path coursePath(Long courseId, long generation) {
+        return journal.directory().resolve("heatmap-c" + courseId + "-" + generation + ".snapshot");
+    }
+
+    private Path legacySnapshotPath() {
+        return journal.directory().resolve("heatmap.snapshot");
+    }
+}
@@ -0,0 +1,182 @@
+package com.example.demo.service;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.util.List;
+
+// 資料匯出 (給分析用)：只選純量欄位，以 forward-only cursor + fetch size 逐批讀取。
+// 依 id 切成多個 chunk，每個 chunk 是一個短的唯讀交易，讀進記憶體、交易結束後才寫到輸出串流；
+// 下載端很慢時等的是 HTTP 回應，不會佔住資料庫連線與交易。
+@Service
+public class ExportService {
+
+    public enum Dataset {
+        UNIT_PROGRESS("unit_progress",
+                "id, user_id, course_id, unit_id, progress_percent, last_position_seconds, completed, delivered, updated_at"),
+        ORDERS("orders",
+                "id, user_id, course_id, status, payment_method, invoice_type, created_at");
+
+        private final String table;
+        private final String columns;
+        private final String[] columnNames;
+
+        Dataset(String table, String columns) {
+            this.table = table;
+            this.columns = columns;
+            this.columnNames = columns.split(",\\s*");
+        }
+    }
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Value("${app.export.fetch-size:1000}")
+    private int fetchSize;
+
+    @Value("${app.export.chunk-size:5000}")
+    private int chunkSize;
+
+    public void export(Dataset dataset, boolean ndjson, OutputStream out) throws IOException {
+        String sql = "SELECT " + dataset.columns + " FROM " + dataset.table +
+                " WHERE id > ? ORDER BY id LIMIT ?";
+        int columns = dataset.columnNames.length;
+        RowWriter writer = ndjson ? new NdjsonWriter(out, dataset.columnNames) : new CsvWriter(out, dataset.columnNames);
+
+        TransactionTemplate tx = new TransactionTemplate(transactionManager);
+        tx.setReadOnly(true);
+
+        long lastId = 0;
+        while (true) {
+            long from = lastId;
+            List<Object[]> rows = tx.execute(status -> jdbcTemplate.query(con -> {
+                PreparedStatement ps = con.prepareStatement(sql, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+                ps.setFetchSize(fetchSize);
+                ps.setLong(1, from);
+                ps.setInt(2, chunkSize);
+                return ps;
+            }, (rs, rowNum) -> {
+                Object[] row = new Object[columns];
+                for (int i = 0; i < columns; i++) {
+                    row[i] = scalar(rs, i + 1);
+                }
+                return row;
+            }));
+            // 交易已經結束，接下來寫得再慢也不影響資料庫
+            if (rows == null)
+                break;
+            for (Object[] row : rows) {
+                writer.write(row);
+            }
+            if (rows.size() < chunkSize)
+                break;
+            lastId = ((Number) rows.get(rows.size() - 1)[0]).longValue();
+        }
+        writer.finish();
+    }
+
+    private static Object scalar(ResultSet rs, int column) throws SQLException {
+        Object value = rs.getObject(column);
+        if (value instanceof Timestamp ts) {
+            return ts.toLocalDateTime().toString();
+        }
+        return value;
+    }
+
+    private interface RowWriter {
+        void write(Object[] row) throws IOException;
+
+        void finish() throws IOException;
+    }
+
+    private static final class CsvWriter implements RowWriter {
+        private final Writer out;
+
+        // 標題列一開始就寫，資料表是空的也有欄位名稱
+        CsvWriter(OutputStream out, String[] columnNames) throws IOException {
+            this.out = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8), 1 << 16);
+            for (int i = 0; i < columnNames.length; i++) {
+                if (i > 0)
+                    this.out.write(',');
+                this.out.write(columnNames[i]);
+            }
+            this.out.write('\n');
+        }
+
+        @Override
+        public void write(Object[] row) throws IOException {
+            for (int i = 0; i < row.length; i++) {
+                if (i > 0)
+                    out.write(',');
+                Object value = row[i];
+                if (value != null) {
+                    String text = value.toString();
+                    if (text.indexOf(',') >= 0 || text.indexOf('"') >= 0
+                            || text.indexOf('\n') >= 0 || text.indexOf('\r') >= 0) {
+                        out.write('"');
+                        out.write(text.replace("\"", "\"\""));
+                        out.write('"');
+                    } else {
+                        out.write(text);
+                    }
+                }
+            }
+            out.write('\n');
+        }
+
+        @Override
+        public void finish() throws IOException {
+            out.flush();
+        }
+    }
+
+    private final class NdjsonWriter implements RowWriter {
+        private final JsonGenerator generator;
+        private final String[] columnNames;
+
+        NdjsonWriter(OutputStream out, String[] columnNames) throws IOException {
+            this.columnNames = columnNames;
+            this.generator = objectMapper.getFactory().createGenerator(out);
+            // 輸出串流由呼叫端負責關閉
+            this.generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+        }
+
+        @Override
+        public void write(Object[] row) throws IOException {
+            generator.writeStartObject();
+            for (int i = 0; i < row.length; i++) {
+                generator.writeFieldName(columnNames[i]);
+                generator.writeObject(row[i]);
+            }
+            generator.writeEndObject();
+            generator.writeRaw('\n');
+        }
+
+        @Override
+        public void finish() throws IOException {
+            generator.flush();
+        }
+    }
+}
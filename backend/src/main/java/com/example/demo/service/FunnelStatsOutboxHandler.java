@@ -0,0 +1,37 @@
+package com.example.demo.service;
+
+import com.example.demo.model.OutboxEvent;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+// 單元交付後更新課程漏斗統計的「已交付」人數：直接累加到 unit_stats，
+// 與事件的處理紀錄同一個交易，重複分派也不會重複計算
+@Service
+public class FunnelStatsOutboxHandler implements OutboxHandler {
+
+    static final String NAME = "funnel-stats";
+
+    @Autowired
+    private FunnelStatsService funnelStatsService;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Override
+    public String name() {
+        return NAME;
+    }
+
+    @Override
+    public boolean supports(String eventType) {
+        return OutboxService.UNIT_DELIVERED.equals(eventType);
+    }
+
+    @Override
+    public void handle(OutboxEvent event) throws Exception {
+        JsonNode payload = objectMapper.readTree(event.getPayload());
+        funnelStatsService.recordDelivered(payload.get("courseId").asLong(), payload.get("unitId").asText());
+    }
+}
@@ -0,0 +1,298 @@
+package com.example.demo.service;
+
+import com.example.demo.model.Course;
+import com.example.demo.model.CourseStats;
+import com.example.demo.model.UnitStats;
+import com.example.demo.repository.CourseStatsRepository;
+import com.example.demo.repository.UnitStatsRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.ConcurrencyFailureException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+// 課程完課漏斗統計：購買 → 開始 → 完成 → 交付 (每個單元)，以及平均進度。
+// 狀態改變時只在記憶體累加 (LongAdder，不影響 API 延遲)，定期把增量累加寫入 course_stats / unit_stats；
+// 讀取時 = 資料表的值 + 尚未寫入的增量，成本只和單元數有關。
+// 增量是近似值 (同一筆進度同時被更新時可能重複計算)，可隨時用 rebuild 從原始資料表重新計算。
+// 交付人數例外：由 outbox 事件直接寫入 unit_stats (見 FunnelStatsOutboxHandler)，不經過記憶體。
+// 只統計大綱裡的單元，URL 帶來的任意 unitId 不會產生新的統計列。
+@Service
+public class FunnelStatsService {
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    private CourseStatsRepository courseStatsRepository;
+
+    @Autowired
+    private UnitStatsRepository unitStatsRepository;
+
+    @Autowired
+    private SyllabusService syllabusService;
+
+    // checkpoint 使用 PostgreSQL 的 INSERT ... ON CONFLICT
+    @Value("${app.stats.enabled:true}")
+    private boolean enabled;
+
+    // 尚未寫入資料表的增量
+    private final Map<Long, LongAdder> enrolled = new ConcurrentHashMap<>();
+    private final Map<UnitKey, UnitCounters> units = new ConcurrentHashMap<>();
+
+    // --- 狀態改變時呼叫 ---
+
+    public void enrolled(Long courseId, long delta) {
+        enrolled.computeIfAbsent(courseId, id -> new LongAdder()).add(delta);
+    }
+
+    public void progressUpdated(Course course, String unitId, boolean started, int progressDelta, boolean completed) {
+        if (!started && progressDelta == 0 && !completed)
+            return;
+        if (!syllabusService.forCourse(course).contains(unitId))
+            return;
+        UnitCounters counters = counters(course.getId(), unitId);
+        if (started)
+            counters.started.increment();
+        if (progressDelta != 0)
+            counters.progressSum.add(progressDelta);
+        if (completed)
+            counters.completed.increment();
+    }
+
+    // 在 OutboxDispatcher 的交易內呼叫，與事件的處理紀錄一起 commit
+    public void recordDelivered(Long courseId, String unitId) {
+        SyllabusService.Syllabus syllabus = syllabusService.forCourses(List.of(courseId)).get(courseId);
+        if (syllabus == null || !syllabus.contains(unitId))
+            return;
+        jdbcTemplate.update("INSERT INTO unit_stats (course_id, unit_id, started, completed, delivered, progress_sum) " +
+                "VALUES (?, ?, 0, 0, 1, 0) ON CONFLICT (course_id, unit_id) DO UPDATE SET " +
+                "delivered = unit_stats.delivered + 1", courseId, unitId);
+    }
+
+    private UnitCounters counters(Long courseId, String unitId) {
+        return units.computeIfAbsent(new UnitKey(courseId, unitId), k -> new UnitCounters());
+    }
+
+    // --- checkpoint ---
+
+    @Scheduled(fixedDelayString = "${app.stats.checkpoint-ms:10000}")
+    public synchronized void checkpoint() {
+        if (!enabled)
+            return;
+
+        // 取出增量 (sum 後再減回去，期間新加的不會遺失)
+        Map<Long, Long> enrolledDelta = new HashMap<>();
+        enrolled.forEach((courseId, adder) -> {
+            long value = adder.sum();
+            if (value != 0) {
+                adder.add(-value);
+                enrolledDelta.put(courseId, value);
+            }
+        });
+        Map<UnitKey, long[]> unitDelta = new HashMap<>();
+        units.forEach((key, counters) -> {
+            long[] values = counters.drain();
+            if (values != null)
+                unitDelta.put(key, values);
+        });
+        if (enrolledDelta.isEmpty() && unitDelta.isEmpty())
+            return;
+
+        try {
+            transactionTemplate.executeWithoutResult(status -> {
+                List<Object[]> courseRows = new ArrayList<>();
+                enrolledDelta.forEach((courseId, value) -> courseRows.add(new Object[] { courseId, value }));
+                jdbcTemplate.batchUpdate("INSERT INTO course_stats (course_id, enrolled) VALUES (?, ?) " +
+                        "ON CONFLICT (course_id) DO UPDATE SET enrolled = course_stats.enrolled + EXCLUDED.enrolled",
+                        courseRows);
+
+                List<Object[]> unitRows = new ArrayList<>();
+                unitDelta.forEach((key, v) -> unitRows.add(new Object[] { key.courseId(), key.unitId(), v[0], v[1], v[3] }));
+                jdbcTemplate.batchUpdate("INSERT INTO unit_stats (course_id, unit_id, started, completed, delivered, progress_sum) " +
+                        "VALUES (?, ?, ?, ?, 0, ?) ON CONFLICT (course_id, unit_id) DO UPDATE SET " +
+                        "started = unit_stats.started + EXCLUDED.started, " +
+                        "completed = unit_stats.completed + EXCLUDED.completed, " +
+                        "progress_sum = unit_stats.progress_sum + EXCLUDED.progress_sum",
+                        unitRows);
+            });
+        } catch (RuntimeException e) {
+            // 寫入失敗就把增量加回去，下次再試
+            e.printStackTrace();
+            enrolledDelta.forEach(this::enrolled);
+            unitDelta.forEach((key, v) -> counters(key.courseId(), key.unitId()).add(v));
+        }
+    }
+
+    // --- 重新計算 ---
+
+    // 第一次啟動 (或新增課程) 時，替還沒有統計資料的課程從原始資料表算一次
+    @EventListener(ApplicationReadyEvent.class)
+    public void onStartup() {
+        if (!enabled)
+            return;
+        for (Long courseId : jdbcTemplate.queryForList(
+                "SELECT c.id FROM courses c WHERE NOT EXISTS (SELECT 1 FROM course_stats s WHERE s.course_id = c.id)",
+                Long.class)) {
+            try {
+                rebuild(courseId);
+            } catch (RuntimeException e) {
+                // 多個節點同時啟動時可能互相衝突，已經有別人算好就好
+                e.printStackTrace();
+            }
+        }
+    }
+
+    // 以 GROUP BY 從 orders / unit_progress 重新計算一門課的統計，取代累加的結果。
+    // - 本機尚未寫入的增量已包含在原始資料表中，直接丟掉
+    // - 交付人數：同一個交易 (REPEATABLE READ，所有敘述看到同一個 snapshot) 內把 snapshot 中還沒處理的
+    //   交付事件標記為 funnel-stats 已處理，這些交付已經算在 unit_progress.delivered 裡，分派時不會再加一次；
+    //   snapshot 之後才 commit 的事件照常由 outbox 累加。分派端同時改到同一列時這裡會遇到序列化衝突，重試即可
+    // - 其他節點記憶體中還沒寫入的增量 (最多 checkpoint-ms 一個週期) 仍會在之後累加上去，
+    //   所以重新計算後的開始 / 完成人數與平均進度仍是近似值，誤差以一個 checkpoint 週期內的更新為上限
+    public synchronized void rebuild(Long courseId) {
+        LongAdder pending = enrolled.get(courseId);
+        if (pending != null)
+            pending.add(-pending.sum());
+        units.forEach((key, counters) -> {
+            if (key.courseId().equals(courseId))
+                counters.drain();
+        });
+
+        TransactionTemplate snapshotTx = new TransactionTemplate(transactionManager);
+        snapshotTx.setIsolationLevel(TransactionDefinition.ISOLATION_REPEATABLE_READ);
+        for (int attempt = 1; ; attempt++) {
+            try {
+                snapshotTx.executeWithoutResult(status -> rebuildInSnapshot(courseId));
+                return;
+            } catch (ConcurrencyFailureException e) {
+                if (attempt >= 3)
+                    throw e;
+            }
+        }
+    }
+
+    private void rebuildInSnapshot(Long courseId) {
+        jdbcTemplate.update("UPDATE outbox_events SET completed_handlers = " +
+                "CASE WHEN COALESCE(completed_handlers, '') = '' THEN ? ELSE completed_handlers || ',' || ? END " +
+                "WHERE processed_at IS NULL AND event_type = ? " +
+                "AND payload::jsonb ->> 'courseId' = ? " +
+                "AND NOT (? = ANY (string_to_array(COALESCE(completed_handlers, ''), ',')))",
+                FunnelStatsOutboxHandler.NAME, FunnelStatsOutboxHandler.NAME, OutboxService.UNIT_DELIVERED,
+                courseId.toString(), FunnelStatsOutboxHandler.NAME);
+        jdbcTemplate.update("DELETE FROM course_stats WHERE course_id = ?", courseId);
+        jdbcTemplate.update("INSERT INTO course_stats (course_id, enrolled) " +
+                "SELECT ?, COUNT(DISTINCT user_id) FROM orders WHERE course_id = ? AND status = 'PAID'",
+                courseId, courseId);
+        jdbcTemplate.update("DELETE FROM unit_stats WHERE course_id = ?", courseId);
+        jdbcTemplate.update("INSERT INTO unit_stats (course_id, unit_id, started, completed, delivered, progress_sum) " +
+                "SELECT course_id, unit_id, COUNT(*), " +
+                "SUM(CASE WHEN completed THEN 1 ELSE 0 END), " +
+                "SUM(CASE WHEN delivered THEN 1 ELSE 0 END), " +
+                "COALESCE(SUM(progress_percent), 0) " +
+                "FROM unit_progress WHERE course_id = ? GROUP BY course_id, unit_id",
+                courseId);
+    }
+
+    // --- 讀取 ---
+
+    public Map<String, Object> funnel(Course course) {
+        Long courseId = course.getId();
+
+        long enrolledCount = courseStatsRepository.findById(courseId).map(CourseStats::getEnrolled).orElse(0L);
+        LongAdder pending = enrolled.get(courseId);
+        if (pending != null)
+            enrolledCount += pending.sum();
+
+        // 依大綱順序列出單元，大綱裡已經不存在的單元排在最後
+        SyllabusService.Syllabus syllabus = syllabusService.forCourse(course);
+        Map<String, long[]> byUnit = new LinkedHashMap<>();
+        for (SyllabusService.Unit unit : syllabus.getUnits()) {
+            byUnit.put(unit.id(), new long[4]);
+        }
+        for (UnitStats stats : unitStatsRepository.findByCourseId(courseId)) {
+            long[] v = byUnit.computeIfAbsent(stats.getUnitId(), id -> new long[4]);
+            v[0] += stats.getStarted();
+            v[1] += stats.getCompleted();
+            v[2] += stats.getDelivered();
+            v[3] += stats.getProgressSum();
+        }
+        units.forEach((key, counters) -> {
+            if (key.courseId().equals(courseId)) {
+                long[] v = byUnit.computeIfAbsent(key.unitId(), id -> new long[4]);
+                counters.addTo(v);
+            }
+        });
+
+        List<Map<String, Object>> unitList = new ArrayList<>();
+        byUnit.forEach((unitId, v) -> {
+            SyllabusService.Unit unit = syllabus.getUnit(unitId);
+            Map<String, Object> row = new LinkedHashMap<>();
+            row.put("unitId", unitId);
+            row.put("title", unit == null ? null : unit.title());
+            row.put("started", v[0]);
+            row.put("completed", v[1]);
+            row.put("delivered", v[2]);
+            row.put("averageProgress", v[0] == 0 ? 0 : Math.round((double) v[3] / v[0] * 10) / 10.0);
+            unitList.add(row);
+        });
+
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("courseId", courseId);
+        result.put("enrolled", enrolledCount);
+        result.put("units", unitList);
+        return result;
+    }
+
+    private record UnitKey(Long courseId, String unitId) {
+    }
+
+    // 陣列格式與 funnel 相同：{started, completed, delivered, progressSum}，delivered 不在記憶體累加 (固定為 0)
+    private static final class UnitCounters {
+        private final LongAdder started = new LongAdder();
+        private final LongAdder completed = new LongAdder();
+        private final LongAdder progressSum = new LongAdder();
+
+        // 取出目前的增量並歸零；沒有增量時回傳 null
+        long[] drain() {
+            long[] v = new long[4];
+            addTo(v);
+            if (v[0] == 0 && v[1] == 0 && v[3] == 0)
+                return null;
+            add(new long[] { -v[0], -v[1], 0, -v[3] });
+            return v;
+        }
+
+        void addTo(long[] v) {
+            v[0] += started.sum();
+            v[1] += completed.sum();
+            v[3] += progressSum.sum();
+        }
+
+        void add(long[] v) {
+            started.add(v[0]);
+            completed.add(v[1]);
+            progressSum.add(v[3]);
+        }
+    }
+}
@@ -0,0 +1,138 @@
+package com.example.demo.service;
+
+import com.example.demo.model.Order;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+// 待付款訂單逾期處理
+// 1. 本機建立的 PENDING 訂單放進時間輪，到期後批次取消 (一次一個 UPDATE)
+// 2. 定期掃描整張表作為保底 (其他節點建立、或重啟前遺留的訂單)
+// 兩者都先取得同一把 advisory lock，同一時間只有一個節點在清理
+@Service
+public class OrderExpiryService {
+
+    // pg_try_advisory_xact_lock 的鎖定鍵 ("ORDEREXP")
+    private static final long ADVISORY_LOCK_KEY = 0x4F52444552455850L;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private NamedParameterJdbcTemplate namedParameterJdbcTemplate;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Value("${app.orders.expiry.enabled:true}")
+    private boolean enabled;
+
+    @Value("${app.orders.pending-ttl:30m}")
+    private Duration pendingTtl;
+
+    @Value("${app.orders.expiry.batch-size:500}")
+    private int batchSize;
+
+    private final TimingWheel<Long> wheel = new TimingWheel<>(1000, 60, 3, System.currentTimeMillis());
+
+    // 時間輪已到期、但尚未成功寫回 DB 的訂單 id
+    private final ConcurrentLinkedQueue<Long> due = new ConcurrentLinkedQueue<>();
+
+    public void track(Order order) {
+        // 停用時沒有人推進時間輪，不要累積
+        if (!enabled)
+            return;
+        long createdAt = order.getCreatedAt().atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+        wheel.schedule(order.getId(), createdAt + pendingTtl.toMillis());
+    }
+
+    public boolean isExpired(Order order) {
+        return "PENDING".equals(order.getStatus())
+                && !order.getCreatedAt().plus(pendingTtl).isAfter(LocalDateTime.now());
+    }
+
+    @Scheduled(fixedDelayString = "${app.orders.expiry.tick-ms:1000}")
+    public void tick() {
+        if (!enabled)
+            return;
+
+        wheel.advanceTo(System.currentTimeMillis(), due::add);
+
+        while (!due.isEmpty()) {
+            List<Long> batch = new ArrayList<>(batchSize);
+            Long id;
+            while (batch.size() < batchSize && (id = due.poll()) != null) {
+                batch.add(id);
+            }
+            Integer cancelled = transactionTemplate.execute(status -> {
+                if (!tryLock())
+                    return null;
+                MapSqlParameterSource params = new MapSqlParameterSource()
+                        .addValue("ids", batch)
+                        .addValue("cutoff", LocalDateTime.now().minus(pendingTtl));
+                // status 條件確保已付款的訂單不會被取消 (與 payOrder 的條件式更新互斥)
+                return namedParameterJdbcTemplate.update(
+                        "UPDATE orders SET status = 'CANCELLED' " +
+                                "WHERE id IN (:ids) AND status = 'PENDING' AND created_at <= :cutoff",
+                        params);
+            });
+            if (cancelled == null) {
+                // 其他節點正在清理，下次 tick 再試
+                due.addAll(batch);
+                return;
+            }
+            if (cancelled > 0) {
+                System.out.println("--- 已取消逾期訂單: " + cancelled + " 筆 ---");
+            }
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${app.orders.expiry.sweep-ms:300000}", initialDelayString = "${app.orders.expiry.sweep-initial-delay-ms:60000}")
+    public void sweep() {
+        if (!enabled)
+            return;
+
+        int total = 0;
+        while (true) {
+            Integer cancelled = transactionTemplate.execute(status -> {
+                if (!tryLock())
+                    return null;
+                return jdbcTemplate.update(
+                        "UPDATE orders SET status = 'CANCELLED' WHERE id IN (" +
+                                "SELECT id FROM orders WHERE status = 'PENDING' AND created_at <= ? " +
+                                "ORDER BY created_at LIMIT ? FOR UPDATE SKIP LOCKED)",
+                        LocalDateTime.now().minus(pendingTtl), batchSize);
+            });
+            if (cancelled == null)
+                break;
+            total += cancelled;
+            if (cancelled < batchSize)
+                break;
+        }
+        if (total > 0) {
+            System.out.println("--- 定期清理逾期訂單: " + total + " 筆 ---");
+        }
+    }
+
+    public int trackedCount() {
+        return wheel.size() + due.size();
+    }
+
+    // 交易結束時自動釋放
+    private boolean tryLock() {
+        return Boolean.TRUE.equals(
+                jdbcTemplate.queryForObject("SELECT pg_try_advisory_xact_lock(?)", Boolean.class, ADVISORY_LOCK_KEY));
+    }
+}
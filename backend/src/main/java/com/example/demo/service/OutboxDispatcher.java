@@ -0,0 +1,209 @@
+package com.example.demo.service;
+
+import com.example.demo.model.OutboxEvent;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+// outbox 分派：批次領取尚未處理的事件 (FOR UPDATE SKIP LOCKED，多個節點可以同時執行)，
+// 交給支援該事件的 OutboxHandler。
+// - 領取時把 available_at 往後延 (lease)，處理期間不會被別人重複領取；節點當機的話 lease 到期後會重新分派
+// - 每個事件在一個交易內處理：先鎖住事件並確認尚未處理，handler 的資料庫寫入與 processed_at 一起 commit；
+//   lease 到期被重新領取時，後到的會等前一個 commit 後發現已處理而略過，不會重複套用
+// - 每個 handler 在自己的 savepoint 內執行，失敗只回滾它自己的寫入；成功的記錄在 completed_handlers，重試時只執行失敗的 handler
+// - 失敗以指數退避重試，超過 max-attempts 就放棄 (保留 last_error 供查詢)
+// - 領取用的索引只涵蓋 processed_at IS NULL 的事件，已處理的事件 (保留 retention 天) 不會讓索引變大
+@Service
+public class OutboxDispatcher {
+
+    private static final RowMapper<OutboxEvent> EVENT_MAPPER = (rs, i) -> {
+        OutboxEvent event = new OutboxEvent();
+        event.setId(rs.getLong("id"));
+        event.setEventType(rs.getString("event_type"));
+        event.setPayload(rs.getString("payload"));
+        event.setCreatedAt(rs.getTimestamp("created_at").toLocalDateTime());
+        event.setAttempts(rs.getInt("attempts"));
+        event.setCompletedHandlers(rs.getString("completed_handlers"));
+        return event;
+    };
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private NamedParameterJdbcTemplate namedParameterJdbcTemplate;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Autowired(required = false)
+    private List<OutboxHandler> handlers = List.of();
+
+    // 領取使用 PostgreSQL 的 FOR UPDATE SKIP LOCKED
+    @Value("${app.outbox.enabled:true}")
+    private boolean enabled;
+
+    @Value("${app.outbox.batch-size:100}")
+    private int batchSize;
+
+    @Value("${app.outbox.lease:5m}")
+    private Duration lease;
+
+    @Value("${app.outbox.max-attempts:10}")
+    private int maxAttempts;
+
+    @Value("${app.outbox.retention:7d}")
+    private Duration retention;
+
+    // 舊版由 Hibernate 建立的是整張表的索引：換成只涵蓋待處理事件的部分索引。
+    // CONCURRENTLY 不會擋住寫入 (交付單元時會新增事件)；建立失敗留下的無效索引下次啟動時重建
+    @EventListener(ApplicationReadyEvent.class)
+    public void ensurePendingIndex() {
+        if (!enabled)
+            return;
+        try {
+            List<Map<String, Object>> existing = jdbcTemplate.queryForList(
+                    "SELECT pg_get_indexdef(i.indexrelid) AS def, i.indisvalid AS valid FROM pg_index i " +
+                            "WHERE i.indexrelid = to_regclass('idx_outbox_pending')");
+            if (!existing.isEmpty()) {
+                String def = (String) existing.get(0).get("def");
+                if (Boolean.TRUE.equals(existing.get(0).get("valid")) && def.contains("WHERE"))
+                    return;
+                jdbcTemplate.execute("DROP INDEX CONCURRENTLY IF EXISTS idx_outbox_pending");
+            }
+            jdbcTemplate.execute("CREATE INDEX CONCURRENTLY IF NOT EXISTS idx_outbox_pending " +
+                    "ON outbox_events (available_at, id) WHERE processed_at IS NULL");
+            System.out.println("--- 建立索引: idx_outbox_pending (processed_at IS NULL) ---");
+        } catch (RuntimeException e) {
+            // 多個節點同時啟動時可能互相衝突，由先完成的那個建立即可
+            e.printStackTrace();
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${app.outbox.poll-ms:1000}", initialDelayString = "${app.outbox.initial-delay-ms:10000}")
+    public void dispatch() {
+        if (!enabled)
+            return;
+
+        while (true) {
+            List<OutboxEvent> batch = claim();
+            for (OutboxEvent event : batch) {
+                process(event);
+            }
+            if (batch.size() < batchSize)
+                break;
+        }
+    }
+
+    private List<OutboxEvent> claim() {
+        List<OutboxEvent> batch = transactionTemplate.execute(status -> {
+            LocalDateTime now = LocalDateTime.now();
+            List<OutboxEvent> events = jdbcTemplate.query(
+                    "SELECT id, event_type, payload, created_at, attempts, completed_handlers FROM outbox_events " +
+                            "WHERE processed_at IS NULL AND available_at <= ? " +
+                            "ORDER BY id LIMIT ? FOR UPDATE SKIP LOCKED",
+                    EVENT_MAPPER, now, batchSize);
+            if (events.isEmpty())
+                return events;
+
+            List<Long> ids = new ArrayList<>(events.size());
+            for (OutboxEvent event : events) {
+                ids.add(event.getId());
+                event.setAttempts(event.getAttempts() + 1);
+            }
+            namedParameterJdbcTemplate.update(
+                    "UPDATE outbox_events SET available_at = :leaseUntil, attempts = attempts + 1 WHERE id IN (:ids)",
+                    new MapSqlParameterSource()
+                            .addValue("leaseUntil", now.plus(lease))
+                            .addValue("ids", ids));
+            return events;
+        });
+        return batch == null ? List.of() : batch;
+    }
+
+    private void process(OutboxEvent event) {
+        try {
+            transactionTemplate.executeWithoutResult(status -> processLocked(event));
+        } catch (RuntimeException e) {
+            // 交易本身失敗 (例如連線中斷)：lease 到期後會重新分派
+            e.printStackTrace();
+        }
+    }
+
+    private void processLocked(OutboxEvent event) {
+        // 別人已經處理完 (lease 到期後重複領取) 就略過；處理中則等它 commit
+        List<String[]> current = jdbcTemplate.query(
+                "SELECT completed_handlers FROM outbox_events WHERE id = ? AND processed_at IS NULL FOR UPDATE",
+                (rs, i) -> new String[] { rs.getString("completed_handlers") }, event.getId());
+        if (current.isEmpty())
+            return;
+
+        Set<String> completed = new LinkedHashSet<>();
+        String completedHandlers = current.get(0)[0];
+        if (completedHandlers != null && !completedHandlers.isEmpty()) {
+            completed.addAll(Arrays.asList(completedHandlers.split(",")));
+        }
+
+        String error = null;
+        for (OutboxHandler handler : handlers) {
+            if (!handler.supports(event.getEventType()) || completed.contains(handler.name()))
+                continue;
+            // JpaTransactionManager 不支援 savepoint，直接下 SQL
+            jdbcTemplate.execute("SAVEPOINT outbox_handler");
+            try {
+                handler.handle(event);
+                jdbcTemplate.execute("RELEASE SAVEPOINT outbox_handler");
+                completed.add(handler.name());
+            } catch (Exception e) {
+                jdbcTemplate.execute("ROLLBACK TO SAVEPOINT outbox_handler");
+                e.printStackTrace();
+                error = handler.name() + ": " + e;
+            }
+        }
+
+        completedHandlers = String.join(",", completed);
+        LocalDateTime now = LocalDateTime.now();
+        if (error == null) {
+            jdbcTemplate.update("UPDATE outbox_events SET processed_at = ?, completed_handlers = ?, last_error = NULL " +
+                    "WHERE id = ?", now, completedHandlers, event.getId());
+        } else if (event.getAttempts() >= maxAttempts) {
+            System.err.println("outbox 事件重試次數已用完，放棄處理: id=" + event.getId() + " " + error);
+            jdbcTemplate.update("UPDATE outbox_events SET processed_at = ?, completed_handlers = ?, last_error = ? " +
+                    "WHERE id = ?", now, completedHandlers, error, event.getId());
+        } else {
+            // 指數退避：2、4、8 ... 秒，最多 10 分鐘
+            long backoffSeconds = Math.min(1L << Math.min(event.getAttempts(), 20), 600);
+            jdbcTemplate.update("UPDATE outbox_events SET available_at = ?, completed_handlers = ?, last_error = ? " +
+                    "WHERE id = ?", now.plusSeconds(backoffSeconds), completedHandlers, error, event.getId());
+        }
+    }
+
+    // 刪除已成功處理的舊事件；失敗放棄的事件保留下來
+    @Scheduled(fixedDelayString = "${app.outbox.purge-ms:3600000}", initialDelayString = "${app.outbox.purge-ms:3600000}")
+    public void purge() {
+        if (!enabled)
+            return;
+        int deleted = jdbcTemplate.update("DELETE FROM outbox_events WHERE processed_at < ? AND last_error IS NULL",
+                LocalDateTime.now().minus(retention));
+        if (deleted > 0) {
+            System.out.println("--- 已清除處理完的 outbox 事件: " + deleted + " 筆 ---");
+        }
+    }
+}
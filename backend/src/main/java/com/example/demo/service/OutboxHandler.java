@@ -0,0 +1,16 @@
+package com.example.demo.service;
+
+import com.example.demo.model.OutboxEvent;
+
+// outbox 事件的處理者 (Spring bean)。handle 在 OutboxDispatcher 處理該事件的交易內執行：
+// 透過 JdbcTemplate 寫入的資料與事件的處理紀錄一起 commit，只會套用一次；handle 丟出例外時會回滾到執行前的 savepoint。
+// 呼叫外部系統等交易以外的副作用仍可能重複 (at-least-once)，這類實作應該可以安全地重複執行。
+public interface OutboxHandler {
+
+    // 記錄在 completedHandlers 裡的名稱，改名會讓未處理完的事件重新執行
+    String name();
+
+    boolean supports(String eventType);
+
+    void handle(OutboxEvent event) throws Exception;
+}
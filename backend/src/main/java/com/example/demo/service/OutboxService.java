@@ -0,0 +1,35 @@
+package com.example.demo.service;
+
+import com.example.demo.model.OutboxEvent;
+import com.example.demo.repository.OutboxEventRepository;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+@Service
+public class OutboxService {
+
+    public static final String UNIT_DELIVERED = "UNIT_DELIVERED";
+
+    @Autowired
+    private OutboxEventRepository outboxEventRepository;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    // 必須在業務資料的交易內呼叫，兩者一起提交或一起回滾
+    @Transactional(propagation = Propagation.MANDATORY)
+    public OutboxEvent publish(String eventType, Object payload) {
+        OutboxEvent event = new OutboxEvent();
+        event.setEventType(eventType);
+        try {
+            event.setPayload(objectMapper.writeValueAsString(payload));
+        } catch (JsonProcessingException e) {
+            throw new IllegalArgumentException("無法序列化 outbox payload", e);
+        }
+        return outboxEventRepository.save(event);
+    }
+}
@@ -0,0 +1,9 @@
+package com.example.demo.service;
+
+// 請求優先等級 (數字越小越重要，過載時越晚被拒絕)
+public enum PriorityClass {
+    CHECKOUT, // 建立訂單 / 付款
+    LOGIN,    // 登入 / 註冊
+    CATALOG,  // 課程瀏覽與其他一般 API
+    HEARTBEAT // 影片觀看進度回報
+}
@@ -0,0 +1,33 @@
+package com.example.demo.service;
+
+import com.example.demo.model.Course;
+import jakarta.persistence.PostRemove;
+import jakarta.persistence.PostUpdate;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+// Course 的 JPA entity listener (由 Spring 建立)：課程更新或刪除時清掉 SyllabusService 的快取。
+// commit 之後再清一次，避免 commit 前有人讀到舊的大綱又放回快取。
+@Component
+public class SyllabusCacheListener {
+
+    @Autowired
+    private SyllabusService syllabusService;
+
+    @PostUpdate
+    @PostRemove
+    public void courseChanged(Course course) {
+        Long courseId = course.getId();
+        syllabusService.evict(courseId);
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    syllabusService.evict(courseId);
+                }
+            });
+        }
+    }
+}
@@ -0,0 +1,138 @@
+package com.example.demo.service;
+
+import com.example.demo.model.Course;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+
+// 解析後的課程大綱 (syllabusJson) 快取：單元清單、每個單元的經驗值。
+// 以課程 id 為 key：手上有 Course 時比對 syllabusJson，內容變了才重新解析；
+// 只有課程 id 時 (儀表板) 直接用快取，課程透過 JPA 更新或刪除時由 SyllabusCacheListener 清除。
+@Service
+public class SyllabusService {
+
+    // 大綱沒有寫 exp 的單元預設給的經驗值
+    public static final int DEFAULT_EXP = 100;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private NamedParameterJdbcTemplate namedParameterJdbcTemplate;
+
+    private final Map<Long, Syllabus> cache = new ConcurrentHashMap<>();
+
+    public Syllabus forCourse(Course course) {
+        return forCourse(course.getId(), course.getSyllabusJson());
+    }
+
+    public Syllabus forCourse(Long courseId, String syllabusJson) {
+        Syllabus cached = cache.get(courseId);
+        if (cached != null && Objects.equals(cached.json, syllabusJson))
+            return cached;
+        Syllabus parsed = parse(syllabusJson);
+        cache.put(courseId, parsed);
+        return parsed;
+    }
+
+    // 不在快取中的課程一次查回來，不需要讀出整個 Course
+    public Map<Long, Syllabus> forCourses(Collection<Long> courseIds) {
+        Map<Long, Syllabus> result = new HashMap<>();
+        List<Long> missing = new ArrayList<>();
+        for (Long courseId : courseIds) {
+            Syllabus cached = cache.get(courseId);
+            if (cached != null) {
+                result.put(courseId, cached);
+            } else {
+                missing.add(courseId);
+            }
+        }
+        if (!missing.isEmpty()) {
+            namedParameterJdbcTemplate.query("SELECT id, syllabus_json FROM courses WHERE id IN (:ids)",
+                    new MapSqlParameterSource("ids", missing), rs -> {
+                        Long courseId = rs.getLong("id");
+                        Syllabus parsed = parse(rs.getString("syllabus_json"));
+                        cache.put(courseId, parsed);
+                        result.put(courseId, parsed);
+                    });
+        }
+        return result;
+    }
+
+    public void evict(Long courseId) {
+        cache.remove(courseId);
+    }
+
+    private Syllabus parse(String json) {
+        Map<String, Unit> units = new LinkedHashMap<>();
+        if (json != null && !json.isBlank()) {
+            try {
+                JsonNode root = objectMapper.readTree(json);
+                for (JsonNode chapter : root) {
+                    String chapterId = chapter.path("id").asText(null);
+                    for (JsonNode unit : chapter.path("units")) {
+                        if (!unit.has("id"))
+                            continue;
+                        String id = unit.get("id").asText();
+                        units.putIfAbsent(id, new Unit(id, unit.path("title").asText(null), chapterId,
+                                unit.has("exp") ? unit.get("exp").asInt() : DEFAULT_EXP));
+                    }
+                }
+            } catch (JsonProcessingException e) {
+                e.printStackTrace(); // 格式錯誤就當作沒有單元
+            }
+        }
+        return new Syllabus(json, units);
+    }
+
+    public static final class Syllabus {
+        private final String json;
+        private final Map<String, Unit> units;
+        private final List<Unit> unitList;
+
+        private Syllabus(String json, Map<String, Unit> units) {
+            this.json = json;
+            this.units = units;
+            this.unitList = Collections.unmodifiableList(new ArrayList<>(units.values()));
+        }
+
+        // 依大綱順序
+        public List<Unit> getUnits() {
+            return unitList;
+        }
+
+        public Unit getUnit(String unitId) {
+            return units.get(unitId);
+        }
+
+        public int getTotalUnits() {
+            return unitList.size();
+        }
+
+        public boolean contains(String unitId) {
+            return units.containsKey(unitId);
+        }
+
+        public int expOf(String unitId) {
+            Unit unit = units.get(unitId);
+            return unit == null ? DEFAULT_EXP : unit.exp();
+        }
+    }
+
+    public record Unit(String id, String title, String chapterId, int exp) {
+    }
+}
@@ -0,0 +1,97 @@
+package com.example.demo.service;
+
+import java.util.ArrayDeque;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.function.Consumer;
+
+// 階層式時間輪 (Hierarchical Timing Wheel)
+// 每層 wheelSize 格，第 n 層每格代表 tickMillis * wheelSize^n 毫秒；到期時間落在越遠的層級，
+// 輪到該格時再往下一層重新分配，因此新增與到期都是 O(1)。
+// schedule 可由任何執行緒呼叫 (先放進無鎖佇列)，advanceTo 只能由單一執行緒 (排程器) 呼叫。
+public class TimingWheel<T> {
+
+    private final long tickMillis;
+    private final int wheelSize;
+    private final long[] levelTicks;
+    private final ArrayDeque<Entry<T>>[][] buckets;
+    private final ConcurrentLinkedQueue<Entry<T>> inbox = new ConcurrentLinkedQueue<>();
+
+    private long currentTime;
+    private int size;
+
+    @SuppressWarnings("unchecked")
+    public TimingWheel(long tickMillis, int wheelSize, int levels, long startMillis) {
+        this.tickMillis = tickMillis;
+        this.wheelSize = wheelSize;
+        this.levelTicks = new long[levels];
+        this.buckets = new ArrayDeque[levels][wheelSize];
+        long tick = tickMillis;
+        for (int level = 0; level < levels; level++) {
+            levelTicks[level] = tick;
+            for (int slot = 0; slot < wheelSize; slot++) {
+                buckets[level][slot] = new ArrayDeque<>();
+            }
+            tick *= wheelSize;
+        }
+        this.currentTime = startMillis - (startMillis % tickMillis);
+    }
+
+    public void schedule(T item, long deadlineMillis) {
+        // 到期時間無條件進位到 tick 邊界，確保不會提早到期
+        long rounded = ((deadlineMillis + tickMillis - 1) / tickMillis) * tickMillis;
+        inbox.offer(new Entry<>(item, rounded));
+    }
+
+    // 推進時鐘到 nowMillis，所有已到期的項目交給 onExpired
+    public void advanceTo(long nowMillis, Consumer<T> onExpired) {
+        Entry<T> pending;
+        while ((pending = inbox.poll()) != null) {
+            size++;
+            insert(pending, onExpired);
+        }
+
+        while (currentTime + tickMillis <= nowMillis) {
+            currentTime += tickMillis;
+            // 先由上層往下層重新分配，再處理最底層當前格
+            for (int level = levelTicks.length - 1; level >= 0; level--) {
+                if (currentTime % levelTicks[level] != 0) {
+                    continue;
+                }
+                ArrayDeque<Entry<T>> bucket = buckets[level][slot(level, currentTime)];
+                int count = bucket.size();
+                for (int i = 0; i < count; i++) {
+                    insert(bucket.poll(), onExpired);
+                }
+            }
+        }
+    }
+
+    public int size() {
+        return size + inbox.size();
+    }
+
+    private void insert(Entry<T> entry, Consumer<T> onExpired) {
+        long delay = entry.deadline - currentTime;
+        if (delay < tickMillis) {
+            size--;
+            onExpired.accept(entry.item);
+            return;
+        }
+        for (int level = 0; level < levelTicks.length; level++) {
+            if (delay < levelTicks[level] * wheelSize) {
+                buckets[level][slot(level, entry.deadline)].add(entry);
+                return;
+            }
+        }
+        // 超出最上層範圍：先放在最上層最遠的一格，輪到時會再重新分配
+        int top = levelTicks.length - 1;
+        buckets[top][slot(top, currentTime + levelTicks[top] * (wheelSize - 1))].add(entry);
+    }
+
+    private int slot(int level, long time) {
+        return (int) ((time / levelTicks[level]) % wheelSize);
+    }
+
+    private record Entry<T>(T item, long deadline) {
+    }
+}
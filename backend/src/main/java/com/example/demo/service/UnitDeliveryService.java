@@ -0,0 +1,89 @@
+package com.example.demo.service;
+
+import com.example.demo.model.Course;
+import com.example.demo.model.UnitProgress;
+import com.example.demo.model.User;
+import com.example.demo.model.UserLevel;
+import com.example.demo.repository.UnitProgressRepository;
+import com.example.demo.repository.UserLevelRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.Map;
+
+// 交付單元 (獲取經驗值)：標記已交付、更新等級、寫入 outbox 在同一個交易內完成。
+// 其他附帶的處理 (統計、通知等) 由 OutboxDispatcher 在背景執行，不增加請求的時間。
+@Service
+public class UnitDeliveryService {
+
+    public enum Outcome { DELIVERED, NOT_COMPLETED, ALREADY_DELIVERED }
+
+    public record Result(Outcome outcome, int expGained, boolean leveledUp, UserLevel level) {
+    }
+
+    @Autowired
+    private UnitProgressRepository progressRepository;
+
+    @Autowired
+    private UserLevelRepository userLevelRepository;
+
+    @Autowired
+    private SyllabusService syllabusService;
+
+    @Autowired
+    private OutboxService outboxService;
+
+    @Transactional
+    public Result deliver(User user, Course course, String unitId) {
+        // 1. 標記為已交付 (條件式更新)；失敗時才查詢原因
+        if (progressRepository.markDelivered(user, course, unitId, LocalDateTime.now()) == 0) {
+            UnitProgress progress = progressRepository.findByUserAndCourseAndUnitId(user, course, unitId)
+                    .orElse(null);
+            if (progress == null || !progress.getCompleted())
+                return new Result(Outcome.NOT_COMPLETED, 0, false, null);
+            return new Result(Outcome.ALREADY_DELIVERED, 0, false, null);
+        }
+
+        // 2. 單元經驗值 (大綱解析結果有快取)
+        int expToGain = syllabusService.forCourse(course).expOf(unitId);
+
+        // 3. 更新使用者經驗值與等級
+        UserLevel userLevel = userLevelRepository.findWithLockByUser(user).orElseGet(() -> {
+            UserLevel ul = new UserLevel();
+            ul.setUser(user);
+            ul.setLevel(1);
+            ul.setCurrentExp(0);
+            ul.setNextLevelThreshold(100);
+            return userLevelRepository.save(ul);
+        });
+
+        userLevel.setCurrentExp(userLevel.getCurrentExp() + expToGain);
+
+        boolean leveledUp = false;
+        // 升級邏輯：當前經驗 >= 門檻時升級
+        while (userLevel.getCurrentExp() >= userLevel.getNextLevelThreshold()) {
+            userLevel.setCurrentExp(userLevel.getCurrentExp() - userLevel.getNextLevelThreshold());
+            userLevel.setLevel(userLevel.getLevel() + 1);
+            // 門檻變為原來的 1.5 倍 (取整數)
+            userLevel.setNextLevelThreshold((int) (userLevel.getNextLevelThreshold() * 1.5));
+            leveledUp = true;
+        }
+
+        userLevelRepository.save(userLevel);
+
+        // 4. 附帶的處理交給 outbox
+        Map<String, Object> payload = new HashMap<>();
+        payload.put("userId", user.getId());
+        payload.put("courseId", course.getId());
+        payload.put("unitId", unitId);
+        payload.put("expGained", expToGain);
+        payload.put("leveledUp", leveledUp);
+        payload.put("newLevel", userLevel.getLevel());
+        outboxService.publish(OutboxService.UNIT_DELIVERED, payload);
+
+        return new Result(Outcome.DELIVERED, expToGain, leveledUp, userLevel);
+    }
+}
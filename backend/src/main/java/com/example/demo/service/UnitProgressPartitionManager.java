@@ -0,0 +1,230 @@
+package com.example.demo.service;
+
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+
+// unit_progress 以 PostgreSQL 宣告式分割 (LIST by course_id) 儲存：每門課一個 partition，另有 DEFAULT partition。
+// - 啟動時若仍是一般資料表，就一次性搬到分割表 (欄位、索引與 Hibernate 建立的相同，Repository 查詢不用改)；
+//   轉換期間整張表被鎖住，所以在 web server 開始接受請求之前就執行
+// - 定期替新課程建立 partition，並把長時間沒有更新的 partition 移到封存用的 tablespace；
+//   封存後又有新進度的 partition 會搬回資料庫預設的 tablespace
+// 所有 DDL 都先取得 advisory lock，多個節點同時啟動時只有一個會執行
+@Service
+public class UnitProgressPartitionManager implements SmartInitializingSingleton {
+
+    // pg_try_advisory_xact_lock 的鎖定鍵 ("UPPART")
+    private static final long ADVISORY_LOCK_KEY = 0x5550504152540000L;
+
+    // 建在分割表上，每個 partition (含之後建立或 ATTACH 的) 都會自動有一份，封存檢查靠它判斷冷熱
+    private static final String UPDATED_AT_INDEX = "idx_unit_progress_updated_at";
+
+    private static final String COLUMNS = "id, completed, delivered, last_position_seconds, progress_percent, " +
+            "unit_id, updated_at, course_id, user_id";
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Value("${app.progress.partitioning.enabled:true}")
+    private boolean enabled;
+
+    // 超過這段時間沒有任何進度更新的課程視為冷資料
+    @Value("${app.progress.partitioning.archive-after:180d}")
+    private Duration archiveAfter;
+
+    // 冷資料要搬去的 tablespace (例如掛在較便宜或有壓縮的磁碟上)，空白表示不搬移
+    @Value("${app.progress.partitioning.archive-tablespace:}")
+    private String archiveTablespace;
+
+    // 所有 bean (含 EntityManagerFactory 的 ddl-auto) 建立完成、web server 啟動之前
+    @Override
+    public void afterSingletonsInstantiated() {
+        if (!isActive())
+            return;
+        migrateIfNeeded();
+        ensureUpdatedAtIndex();
+    }
+
+    // DataSeeder 之後執行，剛建立的課程也會有自己的 partition
+    @EventListener(ApplicationReadyEvent.class)
+    public void onStartup() {
+        maintain();
+    }
+
+    @Scheduled(fixedDelayString = "${app.progress.partitioning.maintenance-ms:3600000}",
+            initialDelayString = "${app.progress.partitioning.maintenance-ms:3600000}")
+    public void maintain() {
+        if (!isActive())
+            return;
+        createMissingPartitions();
+        archiveColdPartitions();
+    }
+
+    private boolean isActive() {
+        if (!enabled)
+            return false;
+        String product = jdbcTemplate.execute(
+                (ConnectionCallback<String>) con -> con.getMetaData().getDatabaseProductName());
+        return "PostgreSQL".equals(product);
+    }
+
+    private void migrateIfNeeded() {
+        transactionTemplate.executeWithoutResult(status -> {
+            if (!tryLock())
+                return;
+            String kind = jdbcTemplate.queryForObject(
+                    "SELECT c.relkind::text FROM pg_class c WHERE c.oid = to_regclass('unit_progress')", String.class);
+            if (!"r".equals(kind))
+                return; // 已經是分割表
+
+            System.out.println("--- unit_progress 轉換為分割表 ---");
+            jdbcTemplate.execute("LOCK TABLE unit_progress IN ACCESS EXCLUSIVE MODE");
+            jdbcTemplate.execute("ALTER TABLE unit_progress RENAME TO unit_progress_legacy");
+            // 舊表上的同名約束會和新表的索引名稱衝突，先移除
+            jdbcTemplate.execute("ALTER TABLE unit_progress_legacy " +
+                    "DROP CONSTRAINT IF EXISTS uk_unit_progress_user_course_unit, " +
+                    "DROP CONSTRAINT IF EXISTS fk_unit_progress_user, " +
+                    "DROP CONSTRAINT IF EXISTS fk_unit_progress_course");
+            jdbcTemplate.execute("CREATE SEQUENCE IF NOT EXISTS unit_progress_part_id_seq");
+            jdbcTemplate.execute("CREATE TABLE unit_progress (" +
+                    "id BIGINT NOT NULL DEFAULT nextval('unit_progress_part_id_seq'), " +
+                    "completed BOOLEAN, " +
+                    "delivered BOOLEAN, " +
+                    "last_position_seconds INTEGER, " +
+                    "progress_percent INTEGER, " +
+                    "unit_id VARCHAR(255) NOT NULL, " +
+                    "updated_at TIMESTAMP(6), " +
+                    "course_id BIGINT NOT NULL, " +
+                    "user_id BIGINT NOT NULL, " +
+                    // 分割表的主鍵與唯一鍵都必須包含分割欄位 course_id
+                    "CONSTRAINT pk_unit_progress_part PRIMARY KEY (id, course_id), " +
+                    "CONSTRAINT uk_unit_progress_user_course_unit UNIQUE (user_id, course_id, unit_id), " +
+                    "CONSTRAINT fk_unit_progress_user FOREIGN KEY (user_id) REFERENCES users (id), " +
+                    "CONSTRAINT fk_unit_progress_course FOREIGN KEY (course_id) REFERENCES courses (id)" +
+                    ") PARTITION BY LIST (course_id)");
+            jdbcTemplate.execute("CREATE TABLE unit_progress_default PARTITION OF unit_progress DEFAULT");
+            for (Long courseId : jdbcTemplate.queryForList("SELECT id FROM courses", Long.class)) {
+                jdbcTemplate.execute("CREATE TABLE " + partitionName(courseId) +
+                        " PARTITION OF unit_progress FOR VALUES IN (" + courseId + ")");
+            }
+            int copied = jdbcTemplate.update("INSERT INTO unit_progress (" + COLUMNS + ") " +
+                    "SELECT " + COLUMNS + " FROM unit_progress_legacy");
+            jdbcTemplate.execute("SELECT setval('unit_progress_part_id_seq', " +
+                    "COALESCE((SELECT max(id) FROM unit_progress), 0) + 1, false)");
+            jdbcTemplate.execute("ALTER SEQUENCE unit_progress_part_id_seq OWNED BY unit_progress.id");
+            jdbcTemplate.execute("DROP TABLE unit_progress_legacy");
+            System.out.println("--- unit_progress 分割完成，搬移 " + copied + " 筆 ---");
+        });
+    }
+
+    // 舊版建立的分割表沒有 updated_at 索引：在分割表上建立一次，PostgreSQL 會替每個 partition 各建一份。
+    // 建立期間會擋住 unit_progress 的寫入，所以和轉換一樣在開始接受請求之前執行
+    private void ensureUpdatedAtIndex() {
+        transactionTemplate.executeWithoutResult(status -> {
+            if (jdbcTemplate.queryForObject("SELECT to_regclass(?) IS NOT NULL", Boolean.class, UPDATED_AT_INDEX))
+                return;
+            if (!tryLock())
+                return;
+            jdbcTemplate.execute("CREATE INDEX IF NOT EXISTS " + UPDATED_AT_INDEX + " ON unit_progress (updated_at)");
+            System.out.println("--- 建立索引: " + UPDATED_AT_INDEX + " ---");
+        });
+    }
+
+    // 新課程的資料一開始會落在 DEFAULT partition，這裡把它搬到專屬的 partition。
+    // 先鎖住 DEFAULT partition 的寫入 (讀取不受影響)，搬移與 ATTACH 之間不會有新資料寫進去；
+    // 搬移本身是單一敘述 (DELETE ... RETURNING 接 INSERT)，不會有刪了卻沒寫入的情況
+    private void createMissingPartitions() {
+        List<Long> courseIds = jdbcTemplate.queryForList(
+                "SELECT id FROM courses WHERE to_regclass('unit_progress_c' || id) IS NULL", Long.class);
+        for (Long courseId : courseIds) {
+            transactionTemplate.executeWithoutResult(status -> {
+                if (!tryLock())
+                    return;
+                String partition = partitionName(courseId);
+                jdbcTemplate.execute("LOCK TABLE unit_progress_default IN SHARE ROW EXCLUSIVE MODE");
+                jdbcTemplate.execute("CREATE TABLE IF NOT EXISTS " + partition +
+                        " (LIKE unit_progress INCLUDING DEFAULTS)");
+                jdbcTemplate.update("WITH moved AS (DELETE FROM unit_progress_default WHERE course_id = ? " +
+                        "RETURNING " + COLUMNS + ") " +
+                        "INSERT INTO " + partition + " (" + COLUMNS + ") SELECT " + COLUMNS + " FROM moved", courseId);
+                jdbcTemplate.execute("ALTER TABLE unit_progress ATTACH PARTITION " + partition +
+                        " FOR VALUES IN (" + courseId + ")");
+                System.out.println("--- 建立 partition: " + partition + " ---");
+            });
+        }
+    }
+
+    // 冷資料 partition 連同索引搬到封存 tablespace；資料仍留在 unit_progress 內，查詢不受影響。
+    // 已封存的 partition 若在 archive-after 內又有更新，就搬回資料庫預設的 tablespace。
+    // 冷熱判斷走 updated_at 索引，只讀索引的一端，不會掃描整個 partition。
+    // 搬移 (兩個方向) 都會重寫整個 partition，期間該課程的進度無法寫入
+    private void archiveColdPartitions() {
+        if (archiveTablespace == null || archiveTablespace.isBlank())
+            return;
+        if (!archiveTablespace.matches("[a-z_][a-z0-9_]*")) {
+            System.err.println("app.progress.partitioning.archive-tablespace 名稱不合法: " + archiveTablespace);
+            return;
+        }
+
+        String defaultTablespace = jdbcTemplate.queryForObject(
+                "SELECT t.spcname FROM pg_database d JOIN pg_tablespace t ON t.oid = d.dattablespace " +
+                        "WHERE d.datname = current_database()", String.class);
+        List<Map<String, Object>> partitions = jdbcTemplate.queryForList(
+                "SELECT c.relname, COALESCE(t.spcname, '') = ? AS archived FROM pg_inherits i " +
+                        "JOIN pg_class c ON c.oid = i.inhrelid " +
+                        "LEFT JOIN pg_tablespace t ON t.oid = c.reltablespace " +
+                        "WHERE i.inhparent = to_regclass('unit_progress') " +
+                        "AND c.relname LIKE 'unit_progress_c%'",
+                archiveTablespace);
+        LocalDateTime cutoff = LocalDateTime.now().minus(archiveAfter);
+        for (Map<String, Object> row : partitions) {
+            String partition = (String) row.get("relname");
+            boolean archived = Boolean.TRUE.equals(row.get("archived"));
+            Boolean hot = jdbcTemplate.queryForObject(
+                    "SELECT EXISTS (SELECT 1 FROM " + partition + " WHERE updated_at > ?)", Boolean.class, cutoff);
+            if (!archived && !Boolean.TRUE.equals(hot)) {
+                moveToTablespace(partition, archiveTablespace, "封存");
+            } else if (archived && Boolean.TRUE.equals(hot)) {
+                moveToTablespace(partition, defaultTablespace, "解除封存");
+            }
+        }
+    }
+
+    private void moveToTablespace(String partition, String tablespace, String action) {
+        transactionTemplate.executeWithoutResult(status -> {
+            if (!tryLock())
+                return;
+            jdbcTemplate.execute("ALTER TABLE " + partition + " SET TABLESPACE " + tablespace);
+            for (String index : jdbcTemplate.queryForList(
+                    "SELECT indexname FROM pg_indexes WHERE tablename = ?", String.class, partition)) {
+                jdbcTemplate.execute("ALTER INDEX " + index + " SET TABLESPACE " + tablespace);
+            }
+            System.out.println("--- " + action + " partition: " + partition + " ---");
+        });
+    }
+
+    private static String partitionName(Long courseId) {
+        return "unit_progress_c" + courseId;
+    }
+
+    // 交易結束時自動釋放
+    private boolean tryLock() {
+        return Boolean.TRUE.equals(
+                jdbcTemplate.queryForObject("SELECT pg_try_advisory_xact_lock(?)", Boolean.class, ADVISORY_LOCK_KEY));
+    }
+}
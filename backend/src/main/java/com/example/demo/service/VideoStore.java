@@ -0,0 +1,111 @@
+package com.example.demo.service;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.UUID;
+
+// 以內容 (SHA-256) 定址的影片儲存：
+//   uploadDir/blobs/ab/abcdef....mp4  實際內容，檔名就是內容的雜湊，寫入後不再變動
+//   uploadDir/<名稱>.mp4             指向 blob 的相對 symbolic link
+// 相同內容只存一份；重新上傳同名影片只是把 link 換掉 (rename，原子操作)。
+// 對外只直接提供 blobs/ 底下的檔案；/videos/<名稱>.mp4 由 VideoController 轉址到目前的 blob，
+// 播放器拿到的一定是不會變動的內容，重新上傳也不會讀到一半被覆蓋。
+@Service
+public class VideoStore {
+
+    @Value("${app.video.upload-dir:/shared/videos}")
+    private String uploadDir;
+
+    // 邊寫入暫存檔邊計算雜湊，不需要先把整個檔案讀進記憶體
+    public Stored store(InputStream content, String fileName) throws IOException {
+        Path root = Paths.get(uploadDir);
+        // 暫存檔放在同一個目錄底下，之後才能用 rename 搬到 blobs
+        Path tmpDir = Files.createDirectories(root.resolve(".tmp"));
+        Path tmp = Files.createTempFile(tmpDir, "upload-", ".part");
+        try {
+            MessageDigest digest = sha256();
+            try (InputStream in = new DigestInputStream(content, digest)) {
+                Files.copy(in, tmp, StandardCopyOption.REPLACE_EXISTING);
+            }
+            String sha256 = HexFormat.of().formatHex(digest.digest());
+
+            Path blob = root.resolve(blobPath(sha256));
+            boolean deduplicated = Files.exists(blob);
+            if (!deduplicated) {
+                Files.createDirectories(blob.getParent());
+                // 同時有人上傳相同內容時，後搬的會蓋掉先搬的，內容一樣所以沒關係
+                Files.move(tmp, blob, StandardCopyOption.ATOMIC_MOVE);
+            }
+            link(root, fileName, sha256);
+            return new Stored(fileName, sha256, deduplicated);
+        } finally {
+            Files.deleteIfExists(tmp);
+        }
+    }
+
+    // 已經有相同內容 (前端先算好雜湊) 時不用再上傳，直接建立 link；沒有這個 blob 則回傳 null
+    public Stored linkExisting(String sha256, String fileName) throws IOException {
+        Path root = Paths.get(uploadDir);
+        if (!Files.exists(root.resolve(blobPath(sha256))))
+            return null;
+        link(root, fileName, sha256);
+        return new Stored(fileName, sha256, true);
+    }
+
+    // 名稱目前對應的影片：symbolic link 回傳 blob 路徑；舊版直接存放的一般檔案回傳檔案；都沒有則回傳 null
+    public Located locate(String fileName) throws IOException {
+        // 暫存檔、暫時的 link 都以 . 開頭
+        if (fileName.isBlank() || fileName.startsWith(".") || fileName.contains("/") || fileName.contains("\\"))
+            return null;
+        Path file = Paths.get(uploadDir).resolve(fileName);
+        if (Files.isSymbolicLink(file)) {
+            String target = Files.readSymbolicLink(file).toString().replace('\\', '/');
+            return target.startsWith("blobs/") && !target.contains("..") ? new Located(target, null) : null;
+        }
+        return Files.isRegularFile(file) ? new Located(null, file) : null;
+    }
+
+    // 先建立暫時的 link 再 rename 成正式名稱：讀取端只會看到舊的或新的 link，不會看到不存在的瞬間
+    private void link(Path root, String fileName, String sha256) throws IOException {
+        Path target = root.resolve(fileName);
+        Path tmpLink = root.resolve("." + fileName + "." + UUID.randomUUID() + ".link");
+        // 相對路徑：前端容器把同一個 volume 掛在不同位置也能解析
+        Files.createSymbolicLink(tmpLink, Paths.get(blobPath(sha256)));
+        try {
+            Files.move(tmpLink, target, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(tmpLink);
+        }
+    }
+
+    // 相對於 uploadDir 的 blob 路徑，以前兩個字元分目錄，避免單一目錄檔案過多
+    public static String blobPath(String sha256) {
+        return "blobs/" + sha256.substring(0, 2) + "/" + sha256 + ".mp4";
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    public record Stored(String fileName, String sha256, boolean deduplicated) {
+    }
+
+    // blobPath 與 file 只會有一個不是 null
+    public record Located(String blobPath, Path file) {
+    }
+}
@@ -0,0 +1,320 @@
+package com.example.demo.service;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Stream;
+
+// 觀看事件日誌：每次進度心跳寫入一筆固定長度 (64 bytes) 的紀錄，附加到 memory-mapped 的區段檔，
+// 寫滿後換下一個檔案。寫入端以 CAS 取得位置後直接寫入，不需上鎖；timestamp 欄位最後寫入 (release)，
+// 讀取端看到非 0 的 timestamp 才視為完整紀錄。
+// 換檔後舊區段可能還有寫入端在寫 (已取得位置但還沒寫完)，每個區段記錄寫入中的數量，歸零前不視為已寫完。
+// 當機時已取得位置卻沒寫完的紀錄會留下空洞，重新開啟後位於恢復位置之前的空洞直接略過。
+// 一個目錄只能有一個寫入端 (單一 process)：開啟時對目錄下的 journal.lock 取得檔案鎖，取不到就啟動失敗。
+// 多個節點共用同一個 volume 時，每個節點要設定不同的 app.journal.node-id，各自寫在 <dir>/<node-id> 底下。
+//
+// 紀錄格式：
+//   0  long  timestampMillis (0 = 尚未寫入)
+//   8  long  userId
+//   16 long  courseId
+//   24 int   positionSeconds
+//   28 byte  unitId 長度
+//   29 35B   unitId (UTF-8)
+@Service
+public class WatchEventJournal {
+
+    public static final int RECORD_SIZE = 64;
+    private static final int MAX_UNIT_BYTES = RECORD_SIZE - 29;
+    private static final VarHandle LONG_VIEW = MethodHandles.byteBufferViewVarHandle(long[].class, ByteOrder.BIG_ENDIAN);
+
+    @Value("${app.journal.enabled:true}")
+    private boolean enabled;
+
+    @Value("${app.journal.dir:./data/journal}")
+    private String dir;
+
+    // 多節點共用同一個 volume 時用來區分目錄，單一節點留空即可
+    @Value("${app.journal.node-id:}")
+    private String nodeId;
+
+    @Value("${app.journal.segment-size-mb:64}")
+    private int segmentSizeMb;
+
+    private Path directory;
+    private FileChannel lockChannel;
+    private int recordsPerSegment;
+    private volatile Segment current;
+
+    // 已換檔、但讀取端還沒確認寫完的區段
+    private final Map<Long, Segment> rolled = new ConcurrentHashMap<>();
+
+    private final LongAdder appended = new LongAdder();
+    private final LongAdder skipped = new LongAdder();
+
+    @PostConstruct
+    void open() throws IOException {
+        if (!enabled)
+            return;
+        directory = nodeId == null || nodeId.isBlank() ? Paths.get(dir) : Paths.get(dir).resolve(nodeId);
+        Files.createDirectories(directory);
+        lockChannel = FileChannel.open(directory.resolve("journal.lock"),
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+        FileLock lock;
+        try {
+            lock = lockChannel.tryLock();
+        } catch (OverlappingFileLockException e) {
+            lock = null; // 同一個 JVM 內已經有人開啟
+        }
+        if (lock == null) {
+            lockChannel.close();
+            throw new IllegalStateException("觀看事件日誌目錄已被其他節點使用: " + directory
+                    + " (請替每個節點設定不同的 app.journal.node-id)");
+        }
+        recordsPerSegment = (int) ((long) segmentSizeMb * 1024 * 1024 / RECORD_SIZE);
+
+        List<Long> segments = listSegments();
+        if (segments.isEmpty()) {
+            current = map(0);
+        } else {
+            // 從最後一個區段的尾端往回找到最後一筆完整紀錄，接著寫
+            Segment last = map(segments.get(segments.size() - 1));
+            int slot = last.capacity;
+            while (slot > 0 && timestamp(last.buffer, slot - 1) == 0) {
+                slot--;
+            }
+            last.nextSlot.set(slot);
+            // 這之前的空洞是當機前沒寫完的紀錄，不會再被寫入
+            last.recovered = slot;
+            current = last;
+        }
+    }
+
+    @PreDestroy
+    void close() {
+        Segment segment = current;
+        if (segment != null) {
+            segment.buffer.force();
+        }
+        if (lockChannel != null) {
+            try {
+                lockChannel.close(); // 一併釋放檔案鎖
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        }
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    // 日誌所在目錄 (含 node-id)，heatmap 的 checkpoint 也放在這裡
+    public Path directory() {
+        return directory;
+    }
+
+    public void append(long userId, long courseId, String unitId, int positionSeconds, long timestampMillis) {
+        if (!enabled)
+            return;
+        byte[] unit = unitId.getBytes(StandardCharsets.UTF_8);
+        if (unit.length > MAX_UNIT_BYTES || timestampMillis == 0) {
+            skipped.increment();
+            return;
+        }
+
+        while (true) {
+            Segment segment = current;
+            // 先登記再取得位置：換檔的執行緒取得位置時，所有拿到有效位置的寫入端都已經登記過
+            segment.writers.incrementAndGet();
+            try {
+                int slot = segment.nextSlot.getAndIncrement();
+                if (slot < segment.capacity) {
+                    int offset = slot * RECORD_SIZE;
+                    ByteBuffer buffer = segment.buffer;
+                    buffer.putLong(offset + 8, userId);
+                    buffer.putLong(offset + 16, courseId);
+                    buffer.putInt(offset + 24, positionSeconds);
+                    buffer.put(offset + 28, (byte) unit.length);
+                    buffer.put(offset + 29, unit);
+                    LONG_VIEW.setRelease(buffer, offset, timestampMillis);
+                    appended.increment();
+                    return;
+                }
+            } finally {
+                segment.writers.decrementAndGet();
+            }
+            roll(segment);
+        }
+    }
+
+    private synchronized void roll(Segment full) {
+        if (current != full)
+            return; // 其他執行緒已經換過了
+        full.buffer.force();
+        rolled.put(full.index, full);
+        current = map(full.index + 1);
+    }
+
+    // 從 segment 的 fromSlot 開始讀取完整的紀錄，回傳下一個要讀的位置。
+    // 還可能有人在寫的區段 (目前的區段，或剛換檔但寫入端還沒全部寫完) 遇到尚未完成的紀錄就停下；
+    // 確定寫完的區段則略過空洞 (例如寫入時發生例外，或當機前沒寫完的位置)
+    public ReadResult read(long segmentIndex, int fromSlot, RecordVisitor visitor) {
+        Segment active = current;
+        Segment segment = active.index == segmentIndex ? active : rolled.get(segmentIndex);
+        ByteBuffer buffer;
+        int limit;
+        int recovered;
+        boolean sealed;
+        if (segment != null) {
+            // 先確認沒有寫入端再讀，讀的過程中就不會有新的紀錄出現
+            sealed = segment != active && segment.writers.get() == 0;
+            buffer = segment.buffer;
+            limit = Math.min(segment.nextSlot.get(), segment.capacity);
+            recovered = segment.recovered;
+        } else {
+            buffer = mapReadOnly(segmentIndex);
+            if (buffer == null)
+                return new ReadResult(fromSlot, true);
+            sealed = true;
+            limit = buffer.capacity() / RECORD_SIZE;
+            recovered = 0;
+        }
+
+        byte[] unit = new byte[MAX_UNIT_BYTES];
+        for (int slot = fromSlot; slot < limit; slot++) {
+            int offset = slot * RECORD_SIZE;
+            long ts = timestamp(buffer, slot);
+            if (ts == 0) {
+                if (sealed || slot < recovered)
+                    continue;
+                return new ReadResult(slot, false);
+            }
+            int length = buffer.get(offset + 28);
+            buffer.get(offset + 29, unit, 0, length);
+            visitor.visit(buffer.getLong(offset + 8), buffer.getLong(offset + 16),
+                    new String(unit, 0, length, StandardCharsets.UTF_8), buffer.getInt(offset + 24), ts);
+        }
+        if (sealed && segment != null)
+            rolled.remove(segmentIndex);
+        return new ReadResult(limit, sealed);
+    }
+
+    public List<Long> listSegments() {
+        List<Long> result = new ArrayList<>();
+        try (Stream<Path> files = Files.list(directory)) {
+            files.map(p -> p.getFileName().toString())
+                    .filter(name -> name.startsWith("segment-") && name.endsWith(".wj"))
+                    .map(name -> Long.parseLong(name.substring(8, name.length() - 3)))
+                    .sorted()
+                    .forEach(result::add);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return result;
+    }
+
+    // 刪除 segmentIndex 之前 (不含) 的區段，但至少保留 keep 個
+    public void deleteSegmentsBefore(long segmentIndex, int keep) {
+        List<Long> segments = listSegments();
+        for (int i = 0; i < segments.size() - keep; i++) {
+            long index = segments.get(i);
+            if (index >= segmentIndex || index == current.index)
+                break;
+            try {
+                Files.deleteIfExists(segmentPath(index));
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        }
+    }
+
+    public long currentSegment() {
+        return current.index;
+    }
+
+    public long appendedCount() {
+        return appended.sum();
+    }
+
+    public long skippedCount() {
+        return skipped.sum();
+    }
+
+    private long timestamp(ByteBuffer buffer, int slot) {
+        return (long) LONG_VIEW.getAcquire(buffer, slot * RECORD_SIZE);
+    }
+
+    private Path segmentPath(long index) {
+        return directory.resolve(String.format("segment-%020d.wj", index));
+    }
+
+    private Segment map(long index) {
+        try (FileChannel channel = FileChannel.open(segmentPath(index),
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0,
+                    (long) recordsPerSegment * RECORD_SIZE);
+            return new Segment(index, buffer, recordsPerSegment);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private ByteBuffer mapReadOnly(long index) {
+        Path path = segmentPath(index);
+        if (!Files.exists(path))
+            return null;
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            return channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @FunctionalInterface
+    public interface RecordVisitor {
+        void visit(long userId, long courseId, String unitId, int positionSeconds, long timestampMillis);
+    }
+
+    public record ReadResult(int nextSlot, boolean segmentComplete) {
+    }
+
+    private static final class Segment {
+        private final long index;
+        private final MappedByteBuffer buffer;
+        private final int capacity;
+        private final AtomicInteger nextSlot = new AtomicInteger();
+        // 已取得位置但還沒寫完的寫入端數量
+        private final AtomicInteger writers = new AtomicInteger();
+        // 開啟既有區段時恢復的寫入位置，之前的空洞不會再被寫入
+        private int recovered;
+
+        private Segment(long index, MappedByteBuffer buffer, int capacity) {
+            this.index = index;
+            this.buffer = buffer;
+            this.capacity = capacity;
+        }
+    }
+}
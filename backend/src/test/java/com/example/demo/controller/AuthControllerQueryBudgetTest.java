@@ -0,0 +1,46 @@
+package com.example.demo.controller;
+
+import com.example.demo.model.User;
+import com.example.demo.support.QueryBudget;
+import com.example.demo.support.QueryBudgetTestSupport;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.MediaType;
+
+import java.util.UUID;
+
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+class AuthControllerQueryBudgetTest extends QueryBudgetTestSupport {
+
+    @Test
+    void register() throws Throwable {
+        String email = UUID.randomUUID() + "@example.com";
+        // email 是否已存在、insert
+        QueryBudget.assertWithin("POST /api/auth/register", 2, 0, () ->
+                mockMvc.perform(post("/api/auth/register")
+                                .contentType(MediaType.APPLICATION_JSON)
+                                .content("{\"email\": \"" + email + "\", \"password\": \"password\", \"name\": \"tester\"}"))
+                        .andExpect(status().isOk()));
+    }
+
+    @Test
+    void login() throws Throwable {
+        User user = createUser();
+        // 以 email 查詢、更新 token
+        QueryBudget.assertWithin("POST /api/auth/login", 2, 1, () ->
+                mockMvc.perform(post("/api/auth/login")
+                                .contentType(MediaType.APPLICATION_JSON)
+                                .content("{\"email\": \"" + user.getEmail() + "\", \"password\": \"password\"}"))
+                        .andExpect(status().isOk()));
+    }
+
+    @Test
+    void me() throws Throwable {
+        User user = createUser();
+        QueryBudget.assertWithin("GET /api/auth/me", 1, 1, () ->
+                mockMvc.perform(get("/api/auth/me").header("Authorization", bearer(user)))
+                        .andExpect(status().isOk()));
+    }
+}
@@ -0,0 +1,25 @@
+package com.example.demo.controller;
+
+import com.example.demo.model.Course;
+import com.example.demo.support.QueryBudget;
+import com.example.demo.support.QueryBudgetTestSupport;
+import org.junit.jupiter.api.Test;
+
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+class CourseControllerQueryBudgetTest extends QueryBudgetTestSupport {
+
+    @Test
+    void listCourses() throws Throwable {
+        QueryBudget.assertWithin("GET /api/courses", 1, 2, () ->
+                mockMvc.perform(get("/api/courses")).andExpect(status().isOk()));
+    }
+
+    @Test
+    void getCourse() throws Throwable {
+        Course course = seededCourse();
+        QueryBudget.assertWithin("GET /api/courses/{id}", 1, 1, () ->
+                mockMvc.perform(get("/api/courses/" + course.getId())).andExpect(status().isOk()));
+    }
+}
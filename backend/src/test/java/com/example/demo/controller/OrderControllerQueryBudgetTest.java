@@ -0,0 +1,130 @@
+package com.example.demo.controller;
+
+import com.example.demo.model.Course;
+import com.example.demo.model.Order;
+import com.example.demo.model.User;
+import com.example.demo.repository.OrderRepository;
+import com.example.demo.support.QueryBudget;
+import com.example.demo.support.QueryBudgetTestSupport;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MvcResult;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.put;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+class OrderControllerQueryBudgetTest extends QueryBudgetTestSupport {
+
+    @Autowired
+    private OrderRepository orderRepository;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    private Order createOrder(User user, Course course, String status) {
+        Order order = new Order();
+        order.setUser(user);
+        order.setCourse(course);
+        order.setStatus(status);
+        return orderRepository.save(order);
+    }
+
+    @Test
+    void createOrder() throws Throwable {
+        User user = createUser();
+        Course course = seededCourse();
+        // token、課程、是否已購買、是否有待付款、insert
+        QueryBudget.assertWithin("POST /api/orders", 5, 2, () ->
+                mockMvc.perform(post("/api/orders")
+                                .header("Authorization", bearer(user))
+                                .contentType(MediaType.APPLICATION_JSON)
+                                .content("{\"courseId\": " + course.getId() + "}"))
+                        .andExpect(status().isOk()));
+    }
+
+    @Test
+    void payOrder() throws Throwable {
+        User user = createUser();
+        Order order = createOrder(user, seededCourse(), "PENDING");
+        QueryBudget.assertWithin("PUT /api/orders/{id}/pay", 3, 2, () ->
+                mockMvc.perform(put("/api/orders/" + order.getId() + "/pay")
+                                .header("Authorization", bearer(user))
+                                .contentType(MediaType.APPLICATION_JSON)
+                                .content("{\"paymentMethod\": \"CREDIT\"}"))
+                        .andExpect(status().isOk()));
+    }
+
+    @Test
+    void cancelOrder() throws Throwable {
+        User user = createUser();
+        Order order = createOrder(user, seededCourse(), "PENDING");
+        // token、訂單、更新狀態
+        QueryBudget.assertWithin("POST /api/orders/{id}/cancel", 3, 2, () ->
+                mockMvc.perform(post("/api/orders/" + order.getId() + "/cancel")
+                                .header("Authorization", bearer(user)))
+                        .andExpect(status().isOk()));
+    }
+
+    @Test
+    void getMyOrders() throws Throwable {
+        User user = createUser();
+        Course course = seededCourse();
+        createOrder(user, course, "PAID");
+        createOrder(user, course, "CANCELLED");
+        // token、有效訂單投影 (不載入 Course)；已取消的訂單不回傳
+        QueryBudget.assertWithin("GET /api/orders/my", 2, 2, () ->
+                mockMvc.perform(get("/api/orders/my").header("Authorization", bearer(user)))
+                        .andExpect(status().isOk())
+                        .andExpect(jsonPath("$.length()").value(1))
+                        .andExpect(jsonPath("$[0].status").value("PAID"))
+                        .andExpect(jsonPath("$[0].courseId").value(course.getId())));
+    }
+
+    @Test
+    void getMyOrderHistory() throws Throwable {
+        User user = createUser();
+        createOrder(user, seededCourse(), "PAID");
+        QueryBudget.assertWithin("GET /api/orders/my/history", 2, 2, () ->
+                mockMvc.perform(get("/api/orders/my/history").header("Authorization", bearer(user)))
+                        .andExpect(status().isOk()));
+    }
+
+    @Test
+    void getMyOrderHistoryFollowsCursor() throws Throwable {
+        User user = createUser();
+        List<Long> expected = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            expected.add(0, createOrder(user, seededCourse(), i % 2 == 0 ? "PAID" : "CANCELLED").getId());
+        }
+
+        // 每頁 2 筆：2 + 2 + 1，最後一頁沒有 nextCursor
+        List<Long> seen = new ArrayList<>();
+        String cursor = null;
+        int pages = 0;
+        do {
+            String url = "/api/orders/my/history?limit=2" + (cursor == null ? "" : "&cursor=" + cursor);
+            MvcResult result = mockMvc.perform(get(url).header("Authorization", bearer(user)))
+                    .andExpect(status().isOk())
+                    .andReturn();
+            JsonNode page = objectMapper.readTree(result.getResponse().getContentAsString());
+            page.get("items").forEach(item -> seen.add(item.get("id").asLong()));
+            cursor = page.get("nextCursor").isNull() ? null : page.get("nextCursor").asText();
+            pages++;
+        } while (cursor != null && pages < 10);
+
+        assertEquals(3, pages);
+        assertNull(cursor);
+        assertEquals(expected, seen);
+    }
+}
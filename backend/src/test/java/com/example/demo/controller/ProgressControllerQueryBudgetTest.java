@@ -0,0 +1,120 @@
+package com.example.demo.controller;
+
+import com.example.demo.model.Course;
+import com.example.demo.model.Order;
+import com.example.demo.model.UnitProgress;
+import com.example.demo.model.User;
+import com.example.demo.model.UserLevel;
+import com.example.demo.repository.OrderRepository;
+import com.example.demo.repository.UnitProgressRepository;
+import com.example.demo.repository.UserLevelRepository;
+import com.example.demo.support.QueryBudget;
+import com.example.demo.support.QueryBudgetTestSupport;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.MediaType;
+
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+class ProgressControllerQueryBudgetTest extends QueryBudgetTestSupport {
+
+    @Autowired
+    private OrderRepository orderRepository;
+
+    @Autowired
+    private UnitProgressRepository progressRepository;
+
+    @Autowired
+    private UserLevelRepository userLevelRepository;
+
+    private void heartbeat(User user, Course course, String unitId) throws Exception {
+        mockMvc.perform(post("/api/progress/courses/" + course.getId() + "/units/" + unitId)
+                        .header("Authorization", bearer(user))
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"position\": 30, \"progress\": 40}"))
+                .andExpect(status().isOk());
+    }
+
+    @Test
+    void firstHeartbeat() throws Throwable {
+        User user = createUser();
+        Course course = seededCourse();
+        // token、課程、既有進度、insert
+        QueryBudget.assertWithin("POST /api/progress/courses/{id}/units/{unitId} (new)", 4, 2,
+                () -> heartbeat(user, course, "c1-u1"));
+    }
+
+    @Test
+    void repeatedHeartbeat() throws Throwable {
+        User user = createUser();
+        Course course = seededCourse();
+        heartbeat(user, course, "c1-u1");
+        // token、課程、既有進度；內容沒有改變時不會 update
+        QueryBudget.assertWithin("POST /api/progress/courses/{id}/units/{unitId}", 3, 3,
+                () -> heartbeat(user, course, "c1-u1"));
+    }
+
+    @Test
+    void getCourseProgress() throws Throwable {
+        User user = createUser();
+        Course course = seededCourse();
+        heartbeat(user, course, "c1-u1");
+        heartbeat(user, course, "c1-u2");
+        QueryBudget.assertWithin("GET /api/progress/courses/{id}", 3, 4, () ->
+                mockMvc.perform(get("/api/progress/courses/" + course.getId()).header("Authorization", bearer(user)))
+                        .andExpect(status().isOk()));
+    }
+
+    @Test
+    void dashboard() throws Throwable {
+        User user = createUser();
+        for (Course course : courseRepository.findAll()) {
+            Order order = new Order();
+            order.setUser(user);
+            order.setCourse(course);
+            order.setStatus("PAID");
+            orderRepository.save(order);
+        }
+        heartbeat(user, seededCourse(), "c1-u1");
+        // 第一次會把課程大綱載入快取
+        mockMvc.perform(get("/api/progress/dashboard").header("Authorization", bearer(user)))
+                .andExpect(status().isOk());
+
+        // token、儀表板查詢、已完成單元 (都與課程數無關)
+        QueryBudget.assertWithin("GET /api/progress/dashboard", 3, 3, () ->
+                mockMvc.perform(get("/api/progress/dashboard").header("Authorization", bearer(user)))
+                        .andExpect(status().isOk()));
+    }
+
+    @Test
+    void deliverUnit() throws Throwable {
+        User user = createUser();
+        Course course = seededCourse();
+
+        Order order = new Order();
+        order.setUser(user);
+        order.setCourse(course);
+        order.setStatus("PAID");
+        orderRepository.save(order);
+
+        UserLevel level = new UserLevel();
+        level.setUser(user);
+        userLevelRepository.save(level);
+
+        UnitProgress progress = new UnitProgress();
+        progress.setUser(user);
+        progress.setCourse(course);
+        progress.setUnitId("c1-u1");
+        progress.setProgressPercent(100);
+        progress.setCompleted(true);
+        progressRepository.save(progress);
+
+        // token、課程、購買檢查、標記已交付 (條件式更新)、鎖定等級、寫入 outbox、更新等級
+        QueryBudget.assertWithin("POST /api/progress/courses/{id}/units/{unitId}/deliver", 7, 4, () ->
+                mockMvc.perform(post("/api/progress/courses/" + course.getId() + "/units/c1-u1/deliver")
+                                .header("Authorization", bearer(user)))
+                        .andExpect(status().isOk()));
+    }
+}
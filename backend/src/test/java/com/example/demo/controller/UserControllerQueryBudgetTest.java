@@ -0,0 +1,39 @@
+package com.example.demo.controller;
+
+import com.example.demo.model.User;
+import com.example.demo.model.UserLevel;
+import com.example.demo.repository.UserLevelRepository;
+import com.example.demo.support.QueryBudget;
+import com.example.demo.support.QueryBudgetTestSupport;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+class UserControllerQueryBudgetTest extends QueryBudgetTestSupport {
+
+    @Autowired
+    private UserLevelRepository userLevelRepository;
+
+    @Test
+    void getLevel() throws Throwable {
+        User user = createUser();
+        UserLevel level = new UserLevel();
+        level.setUser(user);
+        userLevelRepository.save(level);
+        // token、等級
+        QueryBudget.assertWithin("GET /api/users/level", 2, 2, () ->
+                mockMvc.perform(get("/api/users/level").header("Authorization", bearer(user)))
+                        .andExpect(status().isOk()));
+    }
+
+    @Test
+    void getLevelCreatesMissing() throws Throwable {
+        User user = createUser();
+        // token、等級 (沒有)、insert
+        QueryBudget.assertWithin("GET /api/users/level (new)", 3, 1, () ->
+                mockMvc.perform(get("/api/users/level").header("Authorization", bearer(user)))
+                        .andExpect(status().isOk()));
+    }
+}
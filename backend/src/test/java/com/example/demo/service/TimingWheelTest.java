@@ -0,0 +1,94 @@
+package com.example.demo.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class TimingWheelTest {
+
+    private static final long TICK = 1000;
+
+    // 每層 10 格、3 層：第 0 層 1 秒一格 (10 秒)，第 1 層 10 秒一格 (100 秒)，第 2 層 100 秒一格 (1000 秒)
+    private final TimingWheel<String> wheel = new TimingWheel<>(TICK, 10, 3, 0);
+
+    private final Map<String, Long> expiredAt = new HashMap<>();
+
+    private void runUntil(long endMillis) {
+        for (long now = 0; now <= endMillis; now += TICK) {
+            long at = now;
+            wheel.advanceTo(now, item -> expiredAt.put(item, at));
+        }
+    }
+
+    @Test
+    void expiresOnTheDeadlineTickOfTheLowestLevel() {
+        wheel.schedule("a", 3000);
+        wheel.schedule("b", 9000);
+        runUntil(20_000);
+        assertEquals(3000L, expiredAt.get("a"));
+        assertEquals(9000L, expiredAt.get("b"));
+    }
+
+    @Test
+    void roundsDeadlineUpToTheNextTick() {
+        wheel.schedule("a", 1500);
+        runUntil(5000);
+        assertEquals(2000L, expiredAt.get("a"));
+    }
+
+    @Test
+    void cascadesFromUpperLevelsWithoutFiringEarly() {
+        wheel.schedule("level1", 15_000);
+        wheel.schedule("level1-boundary", 10_000);
+        wheel.schedule("level2", 150_000);
+        wheel.schedule("level2-odd", 987_000);
+        runUntil(1_000_000);
+        assertEquals(15_000L, expiredAt.get("level1"));
+        assertEquals(10_000L, expiredAt.get("level1-boundary"));
+        assertEquals(150_000L, expiredAt.get("level2"));
+        assertEquals(987_000L, expiredAt.get("level2-odd"));
+    }
+
+    @Test
+    void cascadesItemsScheduledAfterTheClockHasMoved() {
+        runUntil(37_000);
+        // 從 37 秒開始，分別落在第 0、1、2 層，也包含剛好繞一圈回到目前格子的情況
+        wheel.schedule("near", 42_000);
+        wheel.schedule("mid", 95_000);
+        wheel.schedule("wrap", 137_000);
+        wheel.schedule("far", 612_000);
+        for (long now = 37_000; now <= 700_000; now += TICK) {
+            long at = now;
+            wheel.advanceTo(now, item -> expiredAt.put(item, at));
+        }
+        assertEquals(42_000L, expiredAt.get("near"));
+        assertEquals(95_000L, expiredAt.get("mid"));
+        assertEquals(137_000L, expiredAt.get("wrap"));
+        assertEquals(612_000L, expiredAt.get("far"));
+    }
+
+    @Test
+    void deadlinesBeyondTheTopLevelWaitInTheOverflowSlot() {
+        // 超過 1000 秒的範圍，會在最上層的最後一格重新分配 (可能不只一次)
+        wheel.schedule("overflow", 2_500_000);
+        runUntil(2_499_000);
+        assertTrue(expiredAt.isEmpty());
+        assertEquals(1, wheel.size());
+        runUntil(2_500_000);
+        assertEquals(2_500_000L, expiredAt.get("overflow"));
+        assertEquals(0, wheel.size());
+    }
+
+    @Test
+    void pastDeadlinesExpireOnTheNextAdvance() {
+        runUntil(10_000);
+        wheel.schedule("late", 4000);
+        wheel.advanceTo(10_000, item -> expiredAt.put(item, 10_000L));
+        assertEquals(10_000L, expiredAt.get("late"));
+        assertEquals(0, wheel.size());
+    }
+}
@@ -0,0 +1,130 @@
+package com.example.demo.service;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class WatchEventJournalTest {
+
+    @TempDir
+    Path dir;
+
+    private final List<WatchEventJournal> opened = new ArrayList<>();
+
+    // 每個區段 1 MB = 16384 筆
+    private WatchEventJournal open(String nodeId) throws IOException {
+        WatchEventJournal journal = new WatchEventJournal();
+        ReflectionTestUtils.setField(journal, "enabled", true);
+        ReflectionTestUtils.setField(journal, "dir", dir.toString());
+        ReflectionTestUtils.setField(journal, "nodeId", nodeId);
+        ReflectionTestUtils.setField(journal, "segmentSizeMb", 1);
+        journal.open();
+        opened.add(journal);
+        return journal;
+    }
+
+    @AfterEach
+    void closeAll() {
+        opened.forEach(WatchEventJournal::close);
+    }
+
+    private static List<Integer> positions(WatchEventJournal journal, long segment, int fromSlot,
+                                           List<WatchEventJournal.ReadResult> results) {
+        List<Integer> seen = new ArrayList<>();
+        results.add(journal.read(segment, fromSlot, (userId, courseId, unitId, position, ts) -> seen.add(position)));
+        return seen;
+    }
+
+    @Test
+    void readsAppendedRecordsInOrder() throws IOException {
+        WatchEventJournal journal = open("");
+        journal.append(7, 2, "unit-1", 10, 1000);
+        journal.append(7, 2, "unit-1", 20, 2000);
+
+        List<String> seen = new ArrayList<>();
+        WatchEventJournal.ReadResult result = journal.read(0, 0,
+                (userId, courseId, unitId, position, ts) -> seen.add(userId + ":" + courseId + ":" + unitId + ":" + position + ":" + ts));
+
+        assertEquals(List.of("7:2:unit-1:10:1000", "7:2:unit-1:20:2000"), seen);
+        assertEquals(2, result.nextSlot());
+        assertFalse(result.segmentComplete());
+    }
+
+    @Test
+    void skipsHoleLeftByCrashAndContinuesAfterIt() throws IOException {
+        WatchEventJournal journal = open("");
+        for (int i = 1; i <= 3; i++) {
+            journal.append(1, 2, "u", i, 1000L * i);
+        }
+        journal.close();
+        opened.remove(journal);
+        // 模擬當機：slot 1 已被取得但沒寫完 (timestamp 仍為 0)
+        try (RandomAccessFile file = new RandomAccessFile(dir.resolve("segment-00000000000000000000.wj").toFile(), "rw")) {
+            file.seek(WatchEventJournal.RECORD_SIZE);
+            file.writeLong(0);
+        }
+
+        WatchEventJournal reopened = open("");
+        List<WatchEventJournal.ReadResult> results = new ArrayList<>();
+        assertEquals(List.of(1, 3), positions(reopened, 0, 0, results));
+        assertEquals(3, results.get(0).nextSlot());
+
+        reopened.append(1, 2, "u", 4, 4000);
+        assertEquals(List.of(4), positions(reopened, 0, 3, results));
+        assertEquals(4, results.get(1).nextSlot());
+    }
+
+    @Test
+    void rolledSegmentIsIncompleteUntilInFlightWritersFinish() throws IOException {
+        WatchEventJournal journal = open("");
+        Object first = ReflectionTestUtils.getField(journal, "current");
+        AtomicInteger writers = (AtomicInteger) ReflectionTestUtils.getField(first, "writers");
+        int capacity = (int) ReflectionTestUtils.getField(first, "capacity");
+        for (int i = 0; i <= capacity; i++) {
+            journal.append(1, 2, "u", i, 1000L + i);
+        }
+        assertEquals(1, journal.currentSegment());
+
+        // 換檔前取得位置、還沒寫完的寫入端
+        writers.incrementAndGet();
+        List<WatchEventJournal.ReadResult> results = new ArrayList<>();
+        positions(journal, 0, 0, results);
+        assertFalse(results.get(0).segmentComplete());
+
+        writers.decrementAndGet();
+        positions(journal, 0, results.get(0).nextSlot(), results);
+        assertTrue(results.get(1).segmentComplete());
+        assertEquals(capacity, results.get(1).nextSlot());
+    }
+
+    @Test
+    void refusesSecondWriterOnTheSameDirectory() throws IOException {
+        open("");
+        assertThrows(IllegalStateException.class, () -> open(""));
+    }
+
+    @Test
+    void nodeIdsGiveEachWriterItsOwnDirectory() throws IOException {
+        WatchEventJournal a = open("node-a");
+        WatchEventJournal b = open("node-b");
+        a.append(1, 2, "u", 1, 1000);
+
+        List<WatchEventJournal.ReadResult> results = new ArrayList<>();
+        assertEquals(List.of(1), positions(a, 0, 0, results));
+        assertEquals(List.of(), positions(b, 0, 0, results));
+        assertEquals(dir.resolve("node-a"), a.directory());
+    }
+}
@@ -0,0 +1,33 @@
+package com.example.demo.support;
+
+import org.junit.jupiter.api.function.Executable;
+
+import static org.junit.jupiter.api.Assertions.fail;
+
+// 用法：QueryBudget.assertWithin("GET /api/courses", 1, 10, () -> mockMvc.perform(...));
+// 超過預算就讓測試失敗，並列出實際執行的 SQL
+public final class QueryBudget {
+
+    private QueryBudget() {
+    }
+
+    public static QueryCounter.Counts assertWithin(String endpoint, int maxStatements, long maxRows,
+            Executable request) throws Throwable {
+        QueryCounter.Counts counts;
+        QueryCounter.start();
+        try {
+            request.execute();
+        } finally {
+            counts = QueryCounter.stop();
+        }
+
+        QueryBudgetReport.record(endpoint, counts, maxStatements, maxRows);
+
+        if (counts.statements() > maxStatements || counts.rows() > maxRows) {
+            fail(String.format("%s 超出 SQL 預算：statements %d/%d, rows %d/%d%n%s",
+                    endpoint, counts.statements(), maxStatements, counts.rows(), maxRows,
+                    String.join(System.lineSeparator(), counts.sql())));
+        }
+        return counts;
+    }
+}
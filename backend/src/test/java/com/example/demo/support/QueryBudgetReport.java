@@ -0,0 +1,36 @@
+package com.example.demo.support;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+// 各 endpoint 的 SQL 預算報表，每次記錄後覆寫 target/query-budget-report.csv
+public final class QueryBudgetReport {
+
+    private static final Path REPORT = Paths.get("target", "query-budget-report.csv");
+    private static final Map<String, String> ROWS = new TreeMap<>();
+
+    private QueryBudgetReport() {
+    }
+
+    static synchronized void record(String endpoint, QueryCounter.Counts counts, int maxStatements, long maxRows) {
+        ROWS.put(endpoint, String.format("\"%s\",%d,%d,%d,%d", endpoint.replace("\"", "\"\""),
+                counts.statements(), maxStatements, counts.rows(), maxRows));
+
+        List<String> lines = new ArrayList<>();
+        lines.add("endpoint,statements,max_statements,rows,max_rows");
+        lines.addAll(ROWS.values());
+        try {
+            Files.createDirectories(REPORT.getParent());
+            Files.write(REPORT, lines, StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            e.printStackTrace(); // 報表寫不出來不影響測試結果
+        }
+    }
+}
@@ -0,0 +1,49 @@
+package com.example.demo.support;
+
+import com.example.demo.model.Course;
+import com.example.demo.model.User;
+import com.example.demo.repository.CourseRepository;
+import com.example.demo.repository.UserRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.util.UUID;
+
+// Controller SQL 預算測試的共用設定：內嵌 H2 (PostgreSQL 相容模式) + 計數 DataSource
+@SpringBootTest
+@AutoConfigureMockMvc
+@ActiveProfiles("test")
+@Import(QueryCountingConfig.class)
+public abstract class QueryBudgetTestSupport {
+
+    @Autowired
+    protected MockMvc mockMvc;
+
+    @Autowired
+    protected UserRepository userRepository;
+
+    @Autowired
+    protected CourseRepository courseRepository;
+
+    protected User createUser() {
+        User user = new User();
+        user.setEmail(UUID.randomUUID() + "@example.com");
+        user.setPassword("password");
+        user.setName("tester");
+        user.setToken(UUID.randomUUID().toString());
+        return userRepository.save(user);
+    }
+
+    protected String bearer(User user) {
+        return "Bearer " + user.getToken();
+    }
+
+    // DataSeeder 啟動時會建立兩門課程
+    protected Course seededCourse() {
+        return courseRepository.findAll().get(0);
+    }
+}
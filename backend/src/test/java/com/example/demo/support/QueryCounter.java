@@ -0,0 +1,56 @@
+package com.example.demo.support;
+
+import java.util.ArrayList;
+import java.util.List;
+
+// 記錄目前執行緒執行過的 SQL 數量與讀取的資料列數 (MockMvc 的請求與測試在同一條執行緒上)
+public final class QueryCounter {
+
+    private static final ThreadLocal<Counts> CURRENT = new ThreadLocal<>();
+
+    private QueryCounter() {
+    }
+
+    public static void start() {
+        CURRENT.set(new Counts());
+    }
+
+    public static Counts stop() {
+        Counts counts = CURRENT.get();
+        CURRENT.remove();
+        return counts != null ? counts : new Counts();
+    }
+
+    static void statement(String sql) {
+        Counts counts = CURRENT.get();
+        if (counts != null) {
+            counts.statements++;
+            counts.sql.add(sql);
+        }
+    }
+
+    static void row() {
+        Counts counts = CURRENT.get();
+        if (counts != null) {
+            counts.rows++;
+        }
+    }
+
+    public static final class Counts {
+        private int statements;
+        private long rows;
+        private final List<String> sql = new ArrayList<>();
+
+        public int statements() {
+            return statements;
+        }
+
+        public long rows() {
+            return rows;
+        }
+
+        public List<String> sql() {
+            return sql;
+        }
+    }
+}
@@ -0,0 +1,25 @@
+package com.example.demo.support;
+
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.Bean;
+
+import javax.sql.DataSource;
+
+// 測試時把 DataSource 換成會計數的代理
+@TestConfiguration
+public class QueryCountingConfig {
+
+    @Bean
+    public static BeanPostProcessor queryCountingDataSourcePostProcessor() {
+        return new BeanPostProcessor() {
+            @Override
+            public Object postProcessAfterInitialization(Object bean, String beanName) {
+                if (bean instanceof DataSource dataSource && !QueryCountingDataSource.isWrapped(bean)) {
+                    return QueryCountingDataSource.wrap(dataSource);
+                }
+                return bean;
+            }
+        };
+    }
+}
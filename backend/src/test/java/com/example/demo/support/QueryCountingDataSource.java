@@ -0,0 +1,93 @@
+package com.example.demo.support;
+
+import javax.sql.DataSource;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.CallableStatement;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.Statement;
+
+// 以 JDK 動態代理包住 DataSource → Connection → Statement → ResultSet，
+// 每次執行 SQL 與每讀一列都回報給 QueryCounter。unwrap 等其餘方法直接轉給原物件。
+public final class QueryCountingDataSource {
+
+    private QueryCountingDataSource() {
+    }
+
+    public static DataSource wrap(DataSource target) {
+        Class<?>[] interfaces = target instanceof AutoCloseable
+                ? new Class<?>[] { DataSource.class, AutoCloseable.class }
+                : new Class<?>[] { DataSource.class };
+        return (DataSource) Proxy.newProxyInstance(QueryCountingDataSource.class.getClassLoader(), interfaces,
+                new Handler(target, null));
+    }
+
+    public static boolean isWrapped(Object bean) {
+        return Proxy.isProxyClass(bean.getClass()) && Proxy.getInvocationHandler(bean) instanceof Handler;
+    }
+
+    private static Object proxy(Class<?> type, Object target, String sql) {
+        return Proxy.newProxyInstance(QueryCountingDataSource.class.getClassLoader(), new Class<?>[] { type },
+                new Handler(target, sql));
+    }
+
+    private static final class Handler implements InvocationHandler {
+        private final Object target;
+        private final String sql; // PreparedStatement 建立時的 SQL
+
+        private Handler(Object target, String sql) {
+            this.target = target;
+            this.sql = sql;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            String name = method.getName();
+            if (name.equals("equals")) {
+                return proxy == args[0];
+            }
+            if (name.equals("hashCode")) {
+                return System.identityHashCode(proxy);
+            }
+
+            if (target instanceof Statement && name.startsWith("execute")) {
+                String executed = args != null && args.length > 0 && args[0] instanceof String s ? s : sql;
+                QueryCounter.statement(executed);
+            }
+
+            Object result;
+            try {
+                result = method.invoke(target, args);
+            } catch (InvocationTargetException e) {
+                throw e.getCause();
+            }
+
+            if (target instanceof DataSource && name.equals("getConnection")) {
+                return proxy(Connection.class, result, null);
+            }
+            if (target instanceof Connection) {
+                if (name.equals("prepareStatement")) {
+                    return proxy(PreparedStatement.class, result, (String) args[0]);
+                }
+                if (name.equals("prepareCall")) {
+                    return proxy(CallableStatement.class, result, (String) args[0]);
+                }
+                if (name.equals("createStatement")) {
+                    return proxy(Statement.class, result, null);
+                }
+            }
+            if (target instanceof Statement && result instanceof ResultSet
+                    && (name.equals("executeQuery") || name.equals("getResultSet"))) {
+                return proxy(ResultSet.class, result, null);
+            }
+            if (target instanceof ResultSet && name.equals("next") && Boolean.TRUE.equals(result)) {
+                QueryCounter.row();
+            }
+            return result;
+        }
+    }
+}
@@ -52,8 +52,8 @@ export default function AllCoursesPage() {
                       const paidIds = new Set<number>();
                       const pendingMap = new Map<number, number>();
                       orders.forEach(o => {
-                          if (o.status === 'PAID') paidIds.add(o.course.id);
-                          else if (o.status === 'PENDING') pendingMap.set(o.course.id, o.id);
+                          if (o.status === 'PAID') paidIds.add(o.courseId);
+                          else if (o.status === 'PENDING') pendingMap.set(o.courseId, o.id);
                       });
                       setPurchasedCourseIds(paidIds);
                       setPendingOrderMap(pendingMap);
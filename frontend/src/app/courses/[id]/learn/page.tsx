@@ -151,7 +151,7 @@ export default function LearnPage({ params }: { params: Promise<{ id: string }>
                         });
                         if (orderRes.ok) {
                             const orders: any[] = await orderRes.json();
-                            purchased = orders.some((o: any) => o.course.id === courseId && o.status === 'PAID');
+                            purchased = orders.some((o: any) => o.courseId === courseId && o.status === 'PAID');
                         }
                     } catch (e) { console.error("Check order failed", e); }
 
@@ -4,16 +4,12 @@ import { useState, useEffect } from "react";
 import Link from "next/link";
 
 interface Course {
-  id: number;
+  courseId: number;
   title: string;
   image: string;
-  author: string;
-}
-
-interface Order {
-    id: number;
-    course: Course;
-    status: string;
+  totalUnits: number;
+  completedUnits: number;
+  percentComplete: number;
 }
 
 export default function MyCoursesPage() {
@@ -30,22 +26,13 @@ export default function MyCoursesPage() {
         }
 
         const API_URL = process.env.NEXT_PUBLIC_API_URL || "http://localhost:8080";
-        // 這裡我們重用 orders API 來過濾已付款的課程
-        // 理想上後端應該有一個 /api/my-courses 端點，但為了節省時間我們先用 orders
-        const res = await fetch(`${API_URL}/api/orders/my`, {
+        // 已購買課程與學習進度 (後端一次查詢組好)
+        const res = await fetch(`${API_URL}/api/progress/dashboard`, {
             headers: { "Authorization": `Bearer ${token}` }
         });
 
         if (res.ok) {
-            const orders: Order[] = await res.json();
-            // 過濾出已付款 (PAID) 的課程，並去重 (避免重複購買顯示兩次)
-            const uniqueCourses = new Map<number, Course>();
-            orders.forEach(o => {
-                if (o.status === 'PAID') {
-                    uniqueCourses.set(o.course.id, o.course);
-                }
-            });
-            setCourses(Array.from(uniqueCourses.values()));
+            setCourses(await res.json());
         }
       } catch (err) {
         console.error(err);
@@ -75,7 +62,7 @@ export default function MyCoursesPage() {
       ) : (
         <div className="grid grid-cols-1 md:grid-cols-2 lg:grid-cols-3 gap-6">
             {courses.map(course => (
-                <Link key={course.id} href={`/courses/${course.id}/learn`} className="group block bg-[#20222e] rounded-xl overflow-hidden border border-white/10 hover:border-[#fbbf24] transition hover:-translate-y-1 duration-300">
+                <Link key={course.courseId} href={`/courses/${course.courseId}/learn`} className="group block bg-[#20222e] rounded-xl overflow-hidden border border-white/10 hover:border-[#fbbf24] transition hover:-translate-y-1 duration-300">
                     <div className="aspect-video bg-black relative">
                         <img src={course.image} alt={course.title} className="w-full h-full object-cover opacity-90 group-hover:opacity-100 transition" />
                         <div className="absolute inset-0 bg-black/20 group-hover:bg-transparent transition"></div>
@@ -86,7 +73,7 @@ export default function MyCoursesPage() {
                     </div>
                     <div className="p-5">
                         <h3 className="text-lg font-bold text-white mb-2 line-clamp-1">{course.title}</h3>
-                        <p className="text-gray-400 text-sm">{course.author}</p>
+                        <p className="text-gray-400 text-sm">已完成 {course.completedUnits} / {course.totalUnits} 單元 ({course.percentComplete}%)</p>
                     </div>
                 </Link>
             ))}
@@ -3,13 +3,22 @@
 import { useState, useEffect } from "react";
 import CheckoutModal, { Course } from "@/components/CheckoutModal";
 
+// 訂單紀錄 (扁平欄位，由 /api/orders/my/history 分頁取得)
 interface Order {
     id: number;
-    course: Course;
     status: string;
+    courseId: number;
+    courseTitle: string;
+    courseImage: string;
+    price: number;
     createdAt: string;
 }
 
+interface PaymentTarget {
+    orderId: number;
+    course: Course;
+}
+
 interface UserLevel {
     level: number;
     currentExp: number;
@@ -18,10 +27,12 @@ interface UserLevel {
 
 export default function ProfilePage() {
     const [orders, setOrders] = useState<Order[]>([]);
+    const [nextCursor, setNextCursor] = useState<string | null>(null);
+    const [loadingMore, setLoadingMore] = useState(false);
     const [loading, setLoading] = useState(true);
     const [user, setUser] = useState<any>(null);
     const [userLevel, setUserLevel] = useState<UserLevel | null>(null);
-    const [selectedPaymentOrder, setSelectedPaymentOrder] = useState<Order | null>(null);
+    const [selectedPaymentOrder, setSelectedPaymentOrder] = useState<PaymentTarget | null>(null);
 
     useEffect(() => {
         const token = sessionStorage.getItem("token");
@@ -39,16 +50,25 @@ export default function ProfilePage() {
         fetchData(token);
     }, []);
 
+    const fetchOrderPage = async (token: string, cursor: string | null) => {
+        const API_URL = process.env.NEXT_PUBLIC_API_URL || "http://localhost:8080";
+        const query = cursor ? `?cursor=${encodeURIComponent(cursor)}` : "";
+        const res = await fetch(`${API_URL}/api/orders/my/history${query}`, {
+            headers: { "Authorization": `Bearer ${token}` }
+        });
+        if (!res.ok) return null;
+        return await res.json() as { items: Order[]; nextCursor: string | null };
+    };
+
     const fetchData = async (token: string) => {
         try {
             const API_URL = process.env.NEXT_PUBLIC_API_URL || "http://localhost:8080";
             
-            // 1. 獲取訂單
-            const ordersRes = await fetch(`${API_URL}/api/orders/my`, {
-                headers: { "Authorization": `Bearer ${token}` }
-            });
-            if (ordersRes.ok) {
-                setOrders(await ordersRes.json());
+            // 1. 獲取訂單 (第一頁)
+            const page = await fetchOrderPage(token, null);
+            if (page) {
+                setOrders(page.items);
+                setNextCursor(page.nextCursor);
             }
 
             // 2. 獲取等級資訊
@@ -66,6 +86,39 @@ export default function ProfilePage() {
         }
     };
 
+    const handleLoadMore = async () => {
+        const token = sessionStorage.getItem("token");
+        if (!token || !nextCursor) return;
+
+        setLoadingMore(true);
+        try {
+            const page = await fetchOrderPage(token, nextCursor);
+            if (page) {
+                setOrders(prev => [...prev, ...page.items]);
+                setNextCursor(page.nextCursor);
+            }
+        } catch (err) {
+            console.error(err);
+        } finally {
+            setLoadingMore(false);
+        }
+    };
+
+    // 付款視窗需要完整的課程資料，點擊時才去取
+    const handlePay = async (order: Order) => {
+        try {
+            const API_URL = process.env.NEXT_PUBLIC_API_URL || "http://localhost:8080";
+            const res = await fetch(`${API_URL}/api/courses/${order.courseId}`);
+            if (res.ok) {
+                setSelectedPaymentOrder({ orderId: order.id, course: await res.json() });
+            } else {
+                alert("課程資料載入失敗");
+            }
+        } catch (err) {
+            alert("連線錯誤");
+        }
+    };
+
     const handleCancelOrder = async (orderId: number) => {
         if (!confirm("確定要取消此訂單嗎？")) return;
         const token = sessionStorage.getItem("token");
@@ -101,7 +154,7 @@ export default function ProfilePage() {
             {selectedPaymentOrder && (
                 <CheckoutModal
                     course={selectedPaymentOrder.course}
-                    existingOrderId={selectedPaymentOrder.id}
+                    existingOrderId={selectedPaymentOrder.orderId}
                     onClose={() => setSelectedPaymentOrder(null)}
                     onPaymentSuccess={() => {
                         const token = sessionStorage.getItem("token");
@@ -210,11 +263,11 @@ export default function ProfilePage() {
                     {orders.map(order => (
                         <div key={order.id} className="bg-[#20222e] border border-white/5 rounded-xl p-5 flex flex-col md:flex-row items-center gap-6 hover:border-white/20 transition group">
                             <div className="w-full md:w-40 aspect-video bg-black rounded-lg overflow-hidden relative flex-shrink-0 shadow-lg group-hover:shadow-xl transition">
-                                <img src={order.course.image} alt={order.course.title} className="w-full h-full object-cover opacity-90 group-hover:opacity-100 transition" />
+                                <img src={order.courseImage} alt={order.courseTitle} className="w-full h-full object-cover opacity-90 group-hover:opacity-100 transition" />
                             </div>
                             
                             <div className="flex-1 w-full text-center md:text-left">
-                                <h3 className="text-white font-bold text-lg mb-1 group-hover:text-[#fbbf24] transition">{order.course.title}</h3>
+                                <h3 className="text-white font-bold text-lg mb-1 group-hover:text-[#fbbf24] transition">{order.courseTitle}</h3>
                                 <div className="flex flex-wrap justify-center md:justify-start gap-3 text-xs text-gray-400 mb-2">
                                     <span className="bg-white/5 px-2 py-0.5 rounded">訂單 #{order.id}</span>
                                     <span>{new Date(order.createdAt).toLocaleString()}</span>
@@ -223,7 +276,7 @@ export default function ProfilePage() {
 
                             <div className="flex flex-col items-end gap-2 min-w-[100px] w-full md:w-auto">
                                 <div className="flex items-center justify-between w-full md:w-auto gap-4">
-                                    <span className="text-white font-bold text-lg">NT${order.course.price.toLocaleString()}</span>
+                                    <span className="text-white font-bold text-lg">NT${order.price.toLocaleString()}</span>
                                     <span className={`px-3 py-1 rounded-full text-xs font-bold
                                         ${order.status === 'PAID' ? 'bg-green-500/10 text-green-400 border border-green-500/20' : ''}
                                         ${order.status === 'PENDING' ? 'bg-yellow-500/10 text-yellow-400 border border-yellow-500/20' : ''}
@@ -235,7 +288,7 @@ export default function ProfilePage() {
                                 
                                 {order.status === 'PENDING' && (
                                     <button 
-                                        onClick={() => setSelectedPaymentOrder(order)}
+                                        onClick={() => handlePay(order)}
                                         className="w-full md:w-auto bg-[#3b82f6] text-white px-4 py-2 rounded-lg text-sm font-bold hover:bg-blue-500 transition shadow-lg shadow-blue-500/20"
                                     >
                                         去付款
@@ -253,6 +306,18 @@ export default function ProfilePage() {
                             </div>
                         </div>
                     ))}
+
+                    {nextCursor && (
+                        <div className="text-center pt-2">
+                            <button
+                                onClick={handleLoadMore}
+                                disabled={loadingMore}
+                                className="text-sm border border-white/10 text-gray-300 px-6 py-2 rounded-lg hover:border-[#fbbf24] hover:text-[#fbbf24] transition disabled:opacity-50"
+                            >
+                                {loadingMore ? "載入中..." : "載入更多"}
+                            </button>
+                        </div>
+                    )}
                 </div>
             )}
         </div>
@@ -6,10 +6,18 @@ import { useState } from "react";
 const MAX_FILE_SIZE_MB = 500;
 const MAX_FILE_SIZE_BYTES = MAX_FILE_SIZE_MB * 1024 * 1024;
 
+// 計算檔案的 SHA-256 (hex)；非 HTTPS / localhost 時瀏覽器不提供 crypto.subtle，回傳 null
+const sha256Hex = async (file: File): Promise<string | null> => {
+    if (typeof crypto === "undefined" || !crypto.subtle) return null;
+    const digest = await crypto.subtle.digest("SHA-256", await file.arrayBuffer());
+    return Array.from(new Uint8Array(digest)).map(b => b.toString(16).padStart(2, "0")).join("");
+};
+
 export default function SecretUploadPage() {
     const [file, setFile] = useState<File | null>(null);
     const [customName, setCustomName] = useState("");
     const [uploading, setUploading] = useState(false);
+    const [stage, setStage] = useState("");
     const [result, setResult] = useState<any>(null);
 
     const [unlockCount, setUnlockCount] = useState(0);
@@ -48,12 +56,34 @@ export default function SecretUploadPage() {
         setUploading(true);
         setResult(null);
 
-        const formData = new FormData();
-        formData.append("file", file);
-        formData.append("fileName", customName);
-
         try {
             const API_URL = process.env.NEXT_PUBLIC_API_URL || "http://localhost:8080";
+
+            // 1. 先算雜湊問伺服器是否已有相同內容，有的話直接建立對應，不用再傳一次
+            setStage("計算檔案雜湊...");
+            const sha256 = await sha256Hex(file);
+            if (sha256) {
+                setStage("檢查伺服器上是否已有相同影片...");
+                const linkRes = await fetch(`${API_URL}/api/test/upload/video/by-digest`, {
+                    method: "POST",
+                    body: new URLSearchParams({ sha256, fileName: customName }),
+                });
+                if (linkRes.ok) {
+                    setResult({ success: true, data: await linkRes.json() });
+                    return;
+                }
+                // 404 表示伺服器上沒有，繼續上傳；其他錯誤 (例如檔名不合法) 直接顯示
+                if (linkRes.status !== 404) {
+                    setResult({ success: false, error: await linkRes.text() });
+                    return;
+                }
+            }
+
+            // 2. 上傳完整檔案
+            setStage("上傳中...");
+            const formData = new FormData();
+            formData.append("file", file);
+            formData.append("fileName", customName);
             const res = await fetch(`${API_URL}/api/test/upload/video`, {
                 method: "POST",
                 body: formData,
@@ -70,6 +100,7 @@ export default function SecretUploadPage() {
             setResult({ success: false, error: "連線錯誤" });
         } finally {
             setUploading(false);
+            setStage("");
         }
     };
 
@@ -135,14 +166,14 @@ export default function SecretUploadPage() {
                             disabled={!file || !customName || uploading}
                             className="w-full bg-red-600 hover:bg-red-500 text-white font-bold py-3 rounded-lg disabled:opacity-50 disabled:cursor-not-allowed transition"
                         >
-                            {uploading ? "上傳中..." : "確認上傳"}
+                            {uploading ? stage : "確認上傳"}
                         </button>
 
                         {result && (
                             <div className={`p-4 rounded-lg text-sm break-all ${result.success ? "bg-green-500/10 text-green-400" : "bg-red-500/10 text-red-400"}`}>
                                 {result.success ? (
                                     <>
-                                        <p className="font-bold mb-1">✅ 上傳成功</p>
+                                        <p className="font-bold mb-1">✅ {result.data.deduplicated ? "已有相同內容的影片，略過上傳" : "上傳成功"}</p>
                                         <p>路徑: {result.data.path}</p>
                                         <p className="text-xs text-gray-500 mt-1">請重新整理頁面或等待 Docker 同步</p>
                                     </>